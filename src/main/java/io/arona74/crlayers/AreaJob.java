@@ -0,0 +1,396 @@
+package io.arona74.crlayers;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Util;
+import net.minecraft.util.WorldSavePath;
+import net.minecraft.util.math.ChunkPos;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Layer generation over an arbitrary area, tile by tile, resumable across server restarts
+ * The chunks of the area that exist on disk are split into TILE_CHUNKS x TILE_CHUNKS tiles, visited
+ * region file by region file. Each tile is calculated together with a halo of the chunks around it
+ * (clipped to the area), wide enough for spreading and smoothing, so tiles match one calculation over
+ * the whole area. Chunks are loaded through the job's ChunkLoader and released once their tile is placed;
+ * the next tile is loaded and calculated while the previous one is placed, and a checkpoint is written
+ * after every placed tile, together with the layer settings the job started with, so a resumed job keeps
+ * them. Region headers are read on a worker thread before the first tile. Only one area job runs at a time;
+ * all methods except indexTiles run on the server thread.
+ */
+public class AreaJob {
+    public static final int TILE_CHUNKS = 16;
+    private static final String CHECKPOINT_FILE = "crlayers_area_job.json";
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private static AreaJob running;
+
+    /**
+     * Persisted state of an area job
+     */
+    private static class Checkpoint {
+        String dimension;
+        int minChunkX;
+        int minChunkZ;
+        int maxChunkX;
+        int maxChunkZ;
+        boolean replacePlants;
+        LayerSettings settings; // Settings the job started with, kept across restarts
+        Long lastTile;          // Origin of the last placed tile (ChunkPos.toLong), null if none
+        int tilesDone;
+        long blocks;
+    }
+
+    /**
+     * Tiles left to process and the number of chunks they place
+     */
+    private static class TileList {
+        final List<ChunkPos> tiles;
+        final int chunkCount;
+
+        TileList(List<ChunkPos> tiles, int chunkCount) {
+            this.tiles = tiles;
+            this.chunkCount = chunkCount;
+        }
+    }
+
+    private final ServerWorld world;
+    private final LayerGenerator generator;
+    private final LayerSettings settings;
+    private final Checkpoint checkpoint;
+    private final Path checkpointFile;
+    private final RegionIndex regionIndex;
+    private final ChunkLoader loader;
+    private List<ChunkPos> tiles;           // Tile origins left to process, in region order, once indexed
+    private final LayerJob job;
+    private final CompletableFuture<Integer> result = new CompletableFuture<>();
+    private final CompletableFuture<Integer> trackedResult;  // Completes after the job state is updated
+    private CompletableFuture<Void> previousPlacement = CompletableFuture.completedFuture(null);
+    private boolean suspended;
+
+    private AreaJob(ServerWorld world, Checkpoint checkpoint) {
+        this.world = world;
+        this.generator = new LayerGenerator(world);
+        this.checkpoint = checkpoint;
+        this.settings = checkpoint.settings;
+
+        this.checkpointFile = world.getServer().getSavePath(WorldSavePath.ROOT).resolve(CHECKPOINT_FILE);
+        this.regionIndex = RegionIndex.of(world);
+        this.loader = new ChunkLoader(world);
+
+        String description = String.format("chunks %d,%d to %d,%d in %s",
+            checkpoint.minChunkX, checkpoint.minChunkZ, checkpoint.maxChunkX, checkpoint.maxChunkZ,
+            checkpoint.dimension);
+        this.job = LayerJobRegistry.start(LayerJob.Type.AREA, description);
+        this.trackedResult = job.attach(result);
+    }
+
+    /**
+     * Resume a checkpointed job when the server starts, and stop the running one (keeping
+     * its checkpoint) when it stops
+     */
+    public static void register() {
+        ServerLifecycleEvents.SERVER_STARTED.register(AreaJob::resume);
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
+            if (running != null) running.suspend();
+        });
+    }
+
+    /**
+     * Start generating layers in a block area
+     * @throws IllegalStateException if an area job is already running
+     */
+    public static AreaJob start(ServerWorld world, int minX, int minZ, int maxX, int maxZ, boolean replacePlants) {
+        if (running != null) {
+            throw new IllegalStateException("Area job #" + running.job.getId() + " is already running");
+        }
+
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.dimension = world.getRegistryKey().getValue().toString();
+        checkpoint.minChunkX = Math.min(minX, maxX) >> 4;
+        checkpoint.minChunkZ = Math.min(minZ, maxZ) >> 4;
+        checkpoint.maxChunkX = Math.max(minX, maxX) >> 4;
+        checkpoint.maxChunkZ = Math.max(minZ, maxZ) >> 4;
+        checkpoint.replacePlants = replacePlants;
+        checkpoint.settings = LayerSettings.current();
+
+        AreaJob areaJob = new AreaJob(world, checkpoint);
+        areaJob.run();
+        return areaJob;
+    }
+
+    private static void resume(MinecraftServer server) {
+        Path file = server.getSavePath(WorldSavePath.ROOT).resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) return;
+
+        Checkpoint checkpoint;
+        try {
+            checkpoint = GSON.fromJson(Files.readString(file), Checkpoint.class);
+        } catch (Exception e) {
+            CRLayers.LOGGER.error("Failed to read area job checkpoint {}", file, e);
+            return;
+        }
+        if (checkpoint.settings == null) {
+            CRLayers.LOGGER.warn("Area job checkpoint {} has no settings, resuming with the current ones", file);
+            checkpoint.settings = LayerSettings.current();
+        }
+
+        for (ServerWorld world : server.getWorlds()) {
+            if (world.getRegistryKey().getValue().toString().equals(checkpoint.dimension)) {
+                CRLayers.LOGGER.info("Resuming area job in {} after {} tiles ({} blocks placed) - {}",
+                    checkpoint.dimension, checkpoint.tilesDone, checkpoint.blocks, checkpoint.settings);
+                new AreaJob(world, checkpoint).run();
+                return;
+            }
+        }
+        CRLayers.LOGGER.warn("Area job checkpoint refers to unknown dimension {}", checkpoint.dimension);
+    }
+
+    /**
+     * Chunks of halo around a tile: spreading reaches the effective max distance, smoothing one block
+     * per cycle, and edge classification one more, plus a block where the halo's own border reads as holes
+     */
+    public static int haloChunks(LayerSettings settings) {
+        int reach = settings.getEffectiveMaxDistance() + settings.getSmoothingCycles() + 2;
+        return (reach + 15) >> 4;
+    }
+
+    public LayerJob getJob() {
+        return job;
+    }
+
+    /**
+     * @return Blocks placed over the whole job (including before a restart), completed on the server thread
+     */
+    public CompletableFuture<Integer> getResult() {
+        return trackedResult;
+    }
+
+    // ==================== Tiles ====================
+
+    /**
+     * Worker thread: read the region headers of the area once and list its tiles
+     * The job's RegionIndex is only touched here until the list is handed back to the server thread,
+     * after which tileChunks finds every header of the area already read.
+     */
+    private TileList indexTiles() {
+        regionIndex.readArea(checkpoint.minChunkX, checkpoint.minChunkZ, checkpoint.maxChunkX, checkpoint.maxChunkZ);
+        List<ChunkPos> found = listTiles();
+
+        int chunkCount = 0;
+        for (ChunkPos tile : found) {
+            chunkCount += tileChunks(tile, 0).size();
+        }
+        return new TileList(found, chunkCount);
+    }
+
+    /**
+     * Tile origins of the area inside existing region files, region by region (row by row), and
+     * row by row inside each region, skipping tiles up to the checkpoint's last placed tile
+     */
+    private List<ChunkPos> listTiles() {
+        List<ChunkPos> regions = new ArrayList<>();
+        for (ChunkPos region : regionIndex.listRegions()) {
+            int startX = region.x * RegionIndex.REGION_CHUNKS;
+            int startZ = region.z * RegionIndex.REGION_CHUNKS;
+            if (startX + RegionIndex.REGION_CHUNKS - 1 < checkpoint.minChunkX || startX > checkpoint.maxChunkX) continue;
+            if (startZ + RegionIndex.REGION_CHUNKS - 1 < checkpoint.minChunkZ || startZ > checkpoint.maxChunkZ) continue;
+            regions.add(region);
+        }
+        regions.sort(Comparator.<ChunkPos>comparingInt(region -> region.z).thenComparingInt(region -> region.x));
+
+        List<ChunkPos> found = new ArrayList<>();
+        for (ChunkPos region : regions) {
+            for (int tileZ = 0; tileZ < RegionIndex.REGION_CHUNKS; tileZ += TILE_CHUNKS) {
+                for (int tileX = 0; tileX < RegionIndex.REGION_CHUNKS; tileX += TILE_CHUNKS) {
+                    ChunkPos tile = new ChunkPos(region.x * RegionIndex.REGION_CHUNKS + tileX,
+                        region.z * RegionIndex.REGION_CHUNKS + tileZ);
+                    if (tile.x + TILE_CHUNKS - 1 < checkpoint.minChunkX || tile.x > checkpoint.maxChunkX) continue;
+                    if (tile.z + TILE_CHUNKS - 1 < checkpoint.minChunkZ || tile.z > checkpoint.maxChunkZ) continue;
+                    found.add(tile);
+                }
+            }
+        }
+
+        // Drop the tiles placed before the checkpoint
+        if (checkpoint.lastTile != null) {
+            ChunkPos lastTile = new ChunkPos(checkpoint.lastTile);
+            int lastIndex = found.indexOf(lastTile);
+            if (lastIndex >= 0) {
+                return new ArrayList<>(found.subList(lastIndex + 1, found.size()));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Existing chunks of a tile grown by a margin, clipped to the area
+     */
+    private List<ChunkPos> tileChunks(ChunkPos tile, int margin) {
+        int minX = Math.max(tile.x - margin, checkpoint.minChunkX);
+        int minZ = Math.max(tile.z - margin, checkpoint.minChunkZ);
+        int maxX = Math.min(tile.x + TILE_CHUNKS - 1 + margin, checkpoint.maxChunkX);
+        int maxZ = Math.min(tile.z + TILE_CHUNKS - 1 + margin, checkpoint.maxChunkZ);
+
+        List<ChunkPos> chunks = new ArrayList<>();
+        for (int chunkZ = minZ; chunkZ <= maxZ; chunkZ++) {
+            for (int chunkX = minX; chunkX <= maxX; chunkX++) {
+                if (regionIndex.exists(chunkX, chunkZ)) {
+                    chunks.add(new ChunkPos(chunkX, chunkZ));
+                }
+            }
+        }
+        return chunks;
+    }
+
+    // ==================== Processing ====================
+
+    private void run() {
+        running = this;
+        save();
+        job.setPhase(LayerJob.Phase.INDEXING);
+        CompletableFuture.supplyAsync(this::indexTiles, Util.getMainWorkerExecutor())
+            .whenCompleteAsync((tileList, error) -> {
+                if (suspended) return;
+                if (error != null) {
+                    finish(error);
+                    return;
+                }
+                tiles = tileList.tiles;
+                job.setChunkCount(tileList.chunkCount);
+                CRLayers.LOGGER.info("Area job #{}: {} tiles, {} chunks, halo of {} chunks",
+                    job.getId(), tiles.size(), tileList.chunkCount, haloChunks(settings));
+                processTile(0);
+            }, world.getServer()::execute);
+    }
+
+    /**
+     * Load and snapshot a tile with its halo, calculate it on a worker thread and queue its placement
+     * The next tile starts once the tile before this one is placed, so at most two plans wait for placement.
+     */
+    private void processTile(int tileIndex) {
+        if (suspended) return;
+
+        // Tiles without saved chunks only move the checkpoint
+        List<ChunkPos> placed = Collections.emptyList();
+        while (!job.isCancelled() && tileIndex < tiles.size()
+                && (placed = tileChunks(tiles.get(tileIndex), 0)).isEmpty()) {
+            ChunkPos emptyTile = tiles.get(tileIndex++);
+            previousPlacement = previousPlacement.thenRun(() -> completeTile(emptyTile, 0));
+        }
+
+        if (job.isCancelled() || tileIndex >= tiles.size()) {
+            previousPlacement.whenComplete((ignored, error) -> finish(error));
+            return;
+        }
+
+        ChunkPos tile = tiles.get(tileIndex);
+        int nextIndex = tileIndex + 1;
+        List<ChunkPos> tilePlaced = placed;
+        List<ChunkPos> chunks = tileChunks(tile, haloChunks(settings));
+
+        job.setPhase(LayerJob.Phase.LOADING);
+        MinecraftServer server = world.getServer();
+        loader.load(chunks)
+            .thenCompose(loaded -> {
+                if (suspended) {
+                    return CompletableFuture.completedFuture(LayerPlan.empty());
+                }
+                List<ChunkPos> loadedPlaced = new ArrayList<>(tilePlaced);
+                loadedPlaced.retainAll(new HashSet<>(loaded));
+
+                job.setPhase(LayerJob.Phase.SNAPSHOT);
+                WorldSnapshot snapshot = generator.snapshotChunks(loaded);
+                return CompletableFuture.supplyAsync(() ->
+                    generator.calculateTilePlan(snapshot, loaded, loadedPlaced, settings, job), Util.getMainWorkerExecutor());
+            })
+            .thenAcceptAsync(plan -> {
+                CompletableFuture<Integer> placement = generator.applyPlanQueued(plan, checkpoint.replacePlants, job);
+                CompletableFuture<Void> previous = previousPlacement;
+                previousPlacement = previous.thenCombine(placement, (ignored, blocks) -> {
+                    loader.release(chunks);
+                    completeTile(tile, blocks);
+                    return null;
+                });
+                previous.whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        finish(error);
+                    } else {
+                        processTile(nextIndex);
+                    }
+                });
+            }, server::execute)
+            .exceptionally(error -> {
+                finish(error);
+                return null;
+            });
+    }
+
+    /**
+     * Checkpoint a placed tile; tiles cut short by cancellation are not recorded
+     */
+    private void completeTile(ChunkPos tile, int blocks) {
+        if (job.isCancelled()) return;
+
+        checkpoint.lastTile = tile.toLong();
+        checkpoint.tilesDone++;
+        checkpoint.blocks += blocks;
+        save();
+    }
+
+    /**
+     * Stop at the next chunk, keeping the checkpoint to resume from on the next start
+     */
+    private void suspend() {
+        suspended = true;
+        job.cancel();
+        loader.close();
+        running = null;
+        CRLayers.LOGGER.info("Area job #{} suspended after {} tiles, it resumes on the next start",
+            job.getId(), checkpoint.tilesDone);
+    }
+
+    private void finish(Throwable error) {
+        if (result.isDone() || suspended) return;
+        running = null;
+        loader.close();
+
+        if (error != null) {
+            // Keep the checkpoint so a restart retries from the last placed tile
+            CRLayers.LOGGER.error("Area job #{} failed after {} tiles", job.getId(), checkpoint.tilesDone, error);
+            result.completeExceptionally(error);
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(checkpointFile);
+        } catch (IOException e) {
+            CRLayers.LOGGER.error("Failed to delete area job checkpoint", e);
+        }
+        CRLayers.LOGGER.info("Area job #{} {} after {} tiles, {} blocks placed", job.getId(),
+            job.isCancelled() ? "cancelled" : "complete", checkpoint.tilesDone, checkpoint.blocks);
+        result.complete((int) Math.min(checkpoint.blocks, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Write the checkpoint through a temporary file, so a crash never leaves it half written
+     */
+    private void save() {
+        try {
+            Path temp = checkpointFile.resolveSibling(CHECKPOINT_FILE + ".tmp");
+            Files.writeString(temp, GSON.toJson(checkpoint));
+            Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            CRLayers.LOGGER.error("Failed to save area job checkpoint", e);
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package io.arona74.crlayers;
 
 import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.registry.Registries;
+import net.minecraft.state.property.Properties;
 import net.minecraft.util.Identifier;
 
 import java.util.HashMap;
@@ -12,10 +14,16 @@ import java.util.Map;
  * Registry for mapping vanilla blocks to their Conquest Reforged layer equivalents
  */
 public class BlockMappingRegistry {
+    public static final int MAX_LAYERS = 8;
+
     private final Map<Block, String> blockToLayerMapping;
+    private final Map<Block, BlockState[]> layerStates;    // Resolved layer state per layer count (index = count - 1)
+    private final BlockState[] fallbackLayerStates;         // Snow layers, used when a mapping cannot be resolved
     
     public BlockMappingRegistry() {
         this.blockToLayerMapping = new HashMap<>();
+        this.layerStates = new HashMap<>();
+        this.fallbackLayerStates = resolveLayerStates(Blocks.SNOW);
         registerDefaultMappings();
     }
     
@@ -40,29 +48,25 @@ public class BlockMappingRegistry {
                 continue;
             }
 
-            blockToLayerMapping.put(vanillaBlock, entry.getValue());
+            putMapping(vanillaBlock, entry.getValue());
         }
 
         CRLayers.LOGGER.info("Registered {} block-to-layer mappings from config", blockToLayerMapping.size());
     }
-    
+
     /**
-     * Get the Conquest Reforged layer block for a given vanilla block
-     * @param vanillaBlock The vanilla block
-     * @param layerCount The number of layers (1-8, though this may not be used depending on CR's implementation)
-     * @return The Conquest Reforged layer block, or null if no mapping exists or block not found
+     * Store a mapping and resolve its layer states up front
      */
-    public Block getLayerBlock(Block vanillaBlock, int layerCount) {
-        String layerBlockId = blockToLayerMapping.get(vanillaBlock);
-        
-        if (layerBlockId == null) {
-            // No mapping found, fall back to snow layers for now
-            CRLayers.LOGGER.debug("No layer mapping found for block: {}, using snow as fallback", 
-                Registries.BLOCK.getId(vanillaBlock));
-            return Blocks.SNOW;
-        }
-        
-        // Try to get the block from registry
+    private void putMapping(Block vanillaBlock, String layerBlockId) {
+        blockToLayerMapping.put(vanillaBlock, layerBlockId);
+        layerStates.put(vanillaBlock, resolveLayerStates(resolveLayerBlock(layerBlockId)));
+    }
+
+    /**
+     * Look up a layer block ID in the registry
+     * @return The layer block, or snow if the ID is invalid or the block is not registered
+     */
+    private static Block resolveLayerBlock(String layerBlockId) {
         Identifier identifier = Identifier.tryParse(layerBlockId);
         if (identifier == null) {
             CRLayers.LOGGER.warn("Invalid block identifier: {}", layerBlockId);
@@ -83,6 +87,48 @@ public class BlockMappingRegistry {
         
         return layerBlock;
     }
+
+    /**
+     * Build the state of a layer block for every layer count 1-8
+     * Blocks without a LAYERS property use their default state for all counts
+     */
+    private static BlockState[] resolveLayerStates(Block layerBlock) {
+        BlockState[] states = new BlockState[MAX_LAYERS];
+        BlockState defaultState = layerBlock.getDefaultState();
+        
+        for (int layers = 1; layers <= MAX_LAYERS; layers++) {
+            states[layers - 1] = defaultState.contains(Properties.LAYERS)
+                ? defaultState.with(Properties.LAYERS, layers)
+                : defaultState;
+        }
+        
+        return states;
+    }
+    
+    /**
+     * Get the Conquest Reforged layer block for a given vanilla block
+     * @param vanillaBlock The vanilla block
+     * @param layerCount The number of layers (1-8, though this may not be used depending on CR's implementation)
+     * @return The Conquest Reforged layer block, snow if no mapping exists or block not found
+     */
+    public Block getLayerBlock(Block vanillaBlock, int layerCount) {
+        return getLayerState(vanillaBlock, layerCount).getBlock();
+    }
+
+    /**
+     * Get the layer block state to place on a given vanilla block
+     * @param vanillaBlock The vanilla block
+     * @param layerCount The number of layers (values above 8 are capped)
+     * @return Pre-resolved layer state, snow layers if no mapping exists or block not found
+     */
+    public BlockState getLayerState(Block vanillaBlock, int layerCount) {
+        BlockState[] states = layerStates.get(vanillaBlock);
+        if (states == null) {
+            // No mapping found, fall back to snow layers for now
+            states = fallbackLayerStates;
+        }
+        return states[Math.max(1, Math.min(layerCount, MAX_LAYERS)) - 1];
+    }
     
     /**
      * Register a custom mapping
@@ -90,7 +136,7 @@ public class BlockMappingRegistry {
      * @param conquestLayerBlockId The Conquest Reforged layer block ID (e.g., "conquest:grass_layer")
      */
     public void registerMapping(Block vanillaBlock, String conquestLayerBlockId) {
-        blockToLayerMapping.put(vanillaBlock, conquestLayerBlockId);
+        putMapping(vanillaBlock, conquestLayerBlockId);
         CRLayers.LOGGER.info("Registered custom mapping: {} -> {}", 
             Registries.BLOCK.getId(vanillaBlock), conquestLayerBlockId);
     }
@@ -0,0 +1,143 @@
+package io.arona74.crlayers;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.tag.BlockTags;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.EmptyBlockView;
+
+/**
+ * Immutable classification table for every registered block state
+ * Indexed by Block.getRawIdFromState, so each hot-path block check is a single array read.
+ * Built once per mapping registry load, since mappable / plant flags depend on the config files.
+ */
+public class BlockStateFlags {
+    public static final int SKIP_FOR_SURFACE = 1;       // Air, leaves, mushroom blocks, plants
+    public static final int FULL_CUBE = 1 << 1;         // Full collision cube
+    public static final int MAPPABLE = 1 << 2;          // Has a layer mapping in block_mappings.json
+    public static final int LAYER_BLOCK = 1 << 3;       // Snow or any layer/slab block
+    public static final int CONQUEST_PLANT = 1 << 4;    // Target of a plant mapping
+    public static final int REPLACEABLE_PLANT = 1 << 5; // Source of a plant mapping
+    public static final int TALL_PLANT = 1 << 6;        // Two block tall plant
+
+    private final byte[] flags;
+
+    private BlockStateFlags(byte[] flags) {
+        this.flags = flags;
+    }
+
+    /**
+     * Classify every registered block state against the given mappings
+     */
+    public static BlockStateFlags build(BlockMappingRegistry mappingRegistry,
+                                        PlantMappingRegistry plantMappingRegistry) {
+        byte[] flags = new byte[Block.STATE_IDS.size()];
+
+        // Everything except the collision shape depends only on the block, so classify
+        // each block once and copy its flags to all of its states
+        for (Block block : Registries.BLOCK) {
+            int blockFlags = computeBlockFlags(block, mappingRegistry, plantMappingRegistry);
+
+            for (BlockState state : block.getStateManager().getStates()) {
+                int rawId = Block.getRawIdFromState(state);
+                if (rawId < 0 || rawId >= flags.length) continue;
+
+                int stateFlags = blockFlags;
+                // Collision shapes of full blocks do not depend on position, so test once per state
+                if (state.isFullCube(EmptyBlockView.INSTANCE, BlockPos.ORIGIN)) stateFlags |= FULL_CUBE;
+                flags[rawId] = (byte) stateFlags;
+            }
+        }
+
+        CRLayers.LOGGER.info("Classified {} block states", flags.length);
+        return new BlockStateFlags(flags);
+    }
+
+    private static int computeBlockFlags(Block block,
+                                         BlockMappingRegistry mappingRegistry,
+                                         PlantMappingRegistry plantMappingRegistry) {
+        int result = 0;
+
+        if (isSkippedForSurface(block)) result |= SKIP_FOR_SURFACE;
+        if (mappingRegistry.hasMapping(block)) result |= MAPPABLE;
+        if (isLayerBlock(block)) result |= LAYER_BLOCK;
+        if (plantMappingRegistry.isConquestPlant(block)) result |= CONQUEST_PLANT;
+        if (plantMappingRegistry.isReplaceablePlant(block)) result |= REPLACEABLE_PLANT;
+        if (PlantMappingRegistry.isTallPlant(block)) result |= TALL_PLANT;
+
+        return result;
+    }
+
+    /**
+     * Blocks the surface search walks through (besides non-full blocks)
+     */
+    private static boolean isSkippedForSurface(Block block) {
+        // Air
+        if (block.getDefaultState().isAir()) return true;
+
+        // Leaves
+        if (block.getDefaultState().isIn(BlockTags.LEAVES)) return true;
+
+        // Mushroom blocks (big mushroom structures)
+        if (block == Blocks.BROWN_MUSHROOM_BLOCK ||
+            block == Blocks.RED_MUSHROOM_BLOCK ||
+            block == Blocks.MUSHROOM_STEM) {
+            return true;
+        }
+
+        // Plants and flowers
+        return block.getDefaultState().isIn(BlockTags.FLOWERS) ||
+               block.getDefaultState().isIn(BlockTags.SAPLINGS) ||
+               block == Blocks.TALL_GRASS ||
+               block == Blocks.GRASS ||
+               block == Blocks.FERN ||
+               block == Blocks.LARGE_FERN ||
+               block == Blocks.DEAD_BUSH;
+    }
+
+    private static boolean isLayerBlock(Block block) {
+        if (block == Blocks.SNOW) return true;
+        String blockId = Registries.BLOCK.getId(block).toString();
+        return blockId.contains("layer") || blockId.contains("slab");
+    }
+
+    // ==================== Lookups ====================
+
+    public int get(BlockState state) {
+        int rawId = Block.getRawIdFromState(state);
+        return rawId >= 0 && rawId < flags.length ? flags[rawId] : 0;
+    }
+
+    public boolean has(BlockState state, int flag) {
+        return (get(state) & flag) != 0;
+    }
+
+    /**
+     * Solid terrain that stops the downward surface search
+     */
+    public boolean isSurface(BlockState state) {
+        return (get(state) & (SKIP_FOR_SURFACE | FULL_CUBE)) == FULL_CUBE;
+    }
+
+    public boolean isMappable(BlockState state) {
+        return has(state, MAPPABLE);
+    }
+
+    public boolean isLayerBlock(BlockState state) {
+        return has(state, LAYER_BLOCK);
+    }
+
+    public boolean isConquestPlant(BlockState state) {
+        return has(state, CONQUEST_PLANT);
+    }
+
+    public boolean isReplaceablePlant(BlockState state) {
+        return has(state, REPLACEABLE_PLANT);
+    }
+
+    public boolean isTallPlant(BlockState state) {
+        return has(state, TALL_PLANT);
+    }
+}
@@ -18,6 +18,12 @@ public class CRLayers implements ModInitializer {
             LayerGeneratorCommand.register(dispatcher);
         });
         
+        // Drain queued block placement a few milliseconds per tick
+        PlacementQueue.register();
+        
+        // Resume checkpointed area jobs on start, suspend them on stop
+        AreaJob.register();
+        
         LOGGER.info("CR Layers Generator initialized successfully");
     }
 }
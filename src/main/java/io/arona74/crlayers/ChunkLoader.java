@@ -0,0 +1,208 @@
+package io.arona74.crlayers;
+
+import com.mojang.datafixers.util.Either;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ChunkHolder;
+import net.minecraft.server.world.ChunkTicketType;
+import net.minecraft.server.world.ServerChunkManager;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.ChunkSerializer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkStatus;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Chunk loading for one layer job, through the server chunk manager with the job's own chunk tickets
+ * A ticket keeps each requested chunk loaded until the job releases it, so chunks stay loaded between
+ * the snapshot and the placement of their layers. Tickets are counted per chunk, so overlapping
+ * requests (tiles sharing halo chunks) share one ticket. At most MAX_IN_FLIGHT chunk loads are
+ * pending at a time; the others wait in order. Only chunks already saved to disk (or loaded) should
+ * be requested. Region files also hold partly generated chunks along the edge of explored terrain,
+ * and loading those as full chunks would generate them (and their neighbors), so before a chunk that
+ * is not loaded gets a ticket its saved status is read and chunks saved below FULL are skipped.
+ * All methods must be called on the server thread.
+ */
+public class ChunkLoader {
+    public static final ChunkTicketType<Integer> TICKET = ChunkTicketType.create("crlayers", Integer::compare);
+    private static final int MAX_IN_FLIGHT = 64;
+    private static final int TICKET_RADIUS = 0;     // Loaded as full chunks, without ticking
+
+    private static int nextId = 1;
+
+    /**
+     * Chunks of one load call, completed once all of them are loaded (or failed to load)
+     */
+    private static class Request {
+        final Collection<ChunkPos> chunks;
+        final Set<ChunkPos> failed = new HashSet<>();
+        final CompletableFuture<List<ChunkPos>> future = new CompletableFuture<>();
+        int pending = 1;
+
+        Request(Collection<ChunkPos> chunks) {
+            this.chunks = chunks;
+        }
+
+        void done() {
+            if (--pending > 0) return;
+            List<ChunkPos> loaded = new ArrayList<>(chunks);
+            loaded.removeAll(failed);
+            future.complete(loaded);
+        }
+    }
+
+    private final ServerWorld world;
+    private final Integer id;                                   // Ticket argument, unique per loader
+    private final Map<Long, Integer> holds = new HashMap<>();   // Chunk -> load calls not released yet
+    private final Set<Long> ticketed = new HashSet<>();         // Held chunks with a ticket of this loader
+    private final Map<Long, Boolean> savedFull = new HashMap<>(); // Chunk -> saved as a full chunk, once read
+    private final ArrayDeque<ChunkPos> waitingChunks = new ArrayDeque<>();
+    private final ArrayDeque<Request> waitingRequests = new ArrayDeque<>();
+    private int inFlight;
+    private boolean closed;
+
+    public ChunkLoader(ServerWorld world) {
+        this.world = world;
+        this.id = nextId++;
+    }
+
+    /**
+     * Hold a ticket on each chunk and load the ones not loaded yet
+     * Every chunk passed here must be released again with release or close.
+     * @return Loaded chunks in the given order, completed on the server thread; chunks that failed
+     * to load, were not saved as full chunks, or were dropped by close are left out
+     */
+    public CompletableFuture<List<ChunkPos>> load(Collection<ChunkPos> chunks) {
+        Request request = new Request(chunks);
+        for (ChunkPos chunkPos : chunks) {
+            holds.merge(chunkPos.toLong(), 1, Integer::sum);
+            if (world.isChunkLoaded(chunkPos.x, chunkPos.z)) {
+                addTicket(chunkPos);
+            } else {
+                request.pending++;
+                waitingChunks.add(chunkPos);
+                waitingRequests.add(request);
+            }
+        }
+        pump();
+        request.done();
+        return request.future;
+    }
+
+    /**
+     * Release chunks of an earlier load call, removing their tickets once no load call holds them
+     */
+    public void release(Collection<ChunkPos> chunks) {
+        for (ChunkPos chunkPos : chunks) {
+            Integer count = holds.get(chunkPos.toLong());
+            if (count == null) continue;
+            if (count > 1) {
+                holds.put(chunkPos.toLong(), count - 1);
+            } else {
+                holds.remove(chunkPos.toLong());
+                if (ticketed.remove(chunkPos.toLong())) {
+                    world.getChunkManager().removeTicket(TICKET, chunkPos, TICKET_RADIUS, id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop the waiting loads and remove every ticket of this loader
+     */
+    public void close() {
+        closed = true;
+        while (!waitingChunks.isEmpty()) {
+            ChunkPos chunkPos = waitingChunks.poll();
+            Request request = waitingRequests.poll();
+            request.failed.add(chunkPos);
+            request.done();
+        }
+
+        ServerChunkManager chunkManager = world.getChunkManager();
+        for (long key : ticketed) {
+            chunkManager.removeTicket(TICKET, new ChunkPos(key), TICKET_RADIUS, id);
+        }
+        ticketed.clear();
+        holds.clear();
+    }
+
+    /**
+     * @return Chunks held by a ticket of this loader
+     */
+    public int getHeldCount() {
+        return ticketed.size();
+    }
+
+    private void addTicket(ChunkPos chunkPos) {
+        if (ticketed.add(chunkPos.toLong())) {
+            world.getChunkManager().addTicket(TICKET, chunkPos, TICKET_RADIUS, id);
+        }
+    }
+
+    /**
+     * Start waiting loads while fewer than MAX_IN_FLIGHT are pending
+     * Each load first reads the chunk's saved status, and only full chunks get a ticket and are loaded.
+     */
+    private void pump() {
+        MinecraftServer server = world.getServer();
+        while (inFlight < MAX_IN_FLIGHT && !waitingChunks.isEmpty()) {
+            ChunkPos chunkPos = waitingChunks.poll();
+            Request request = waitingRequests.poll();
+            inFlight++;
+
+            readSavedFull(chunkPos).whenCompleteAsync((full, readError) -> {
+                if (closed || !holds.containsKey(chunkPos.toLong())) {
+                    loaded(request, chunkPos, false);
+                } else if (readError != null || !full) {
+                    if (readError != null) {
+                        CRLayers.LOGGER.warn("Failed to read saved chunk {} for layers", chunkPos, readError);
+                    } else {
+                        CRLayers.LOGGER.debug("Skipping chunk {}, it was saved before it was fully generated", chunkPos);
+                    }
+                    loaded(request, chunkPos, false);
+                } else {
+                    addTicket(chunkPos);
+                    CompletableFuture<Either<Chunk, ChunkHolder.Unloaded>> future =
+                        world.getChunkManager().getChunkFutureSyncOnMainThread(chunkPos.x, chunkPos.z, ChunkStatus.FULL, true);
+                    future.whenCompleteAsync((either, error) -> {
+                        boolean success = error == null && either.left().isPresent();
+                        if (!success) CRLayers.LOGGER.warn("Failed to load chunk {} for layers", chunkPos);
+                        loaded(request, chunkPos, success);
+                    }, server::execute);
+                }
+            }, server::execute);
+        }
+    }
+
+    /**
+     * Whether a chunk is saved as a full chunk, read from its chunk NBT (once per chunk and loader)
+     * Chunks saved before 1.18 keep their status in a Level compound.
+     */
+    private CompletableFuture<Boolean> readSavedFull(ChunkPos chunkPos) {
+        Boolean known = savedFull.get(chunkPos.toLong());
+        if (known != null) return CompletableFuture.completedFuture(known);
+
+        return world.getChunkManager().threadedAnvilChunkStorage.getNbt(chunkPos).thenApplyAsync(nbt -> {
+            boolean full = nbt.map(chunkNbt -> {
+                NbtCompound status = chunkNbt.contains("Level", NbtElement.COMPOUND_TYPE)
+                    ? chunkNbt.getCompound("Level")
+                    : chunkNbt;
+                return ChunkSerializer.getChunkType(status) == ChunkStatus.ChunkType.LEVELCHUNK;
+            }).orElse(false);
+            savedFull.put(chunkPos.toLong(), full);
+            return full;
+        }, world.getServer()::execute);
+    }
+
+    private void loaded(Request request, ChunkPos chunkPos, boolean success) {
+        inFlight--;
+        if (!success) request.failed.add(chunkPos);
+        request.done();
+        if (!closed) pump();
+    }
+}
@@ -0,0 +1,120 @@
+package io.arona74.crlayers;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.chunk.WorldChunk;
+
+/**
+ * Block states and WORLD_SURFACE heightmap of one chunk, readable from any thread
+ * A copied snapshot owns copies of the section palettes from its top block down to a given
+ * section; a live snapshot shares the chunk's own containers and is only safe on the server thread.
+ * Sections that are empty, above the top block or below the copied range read as air.
+ */
+public class ChunkSnapshot {
+    private static final BlockState AIR = Blocks.AIR.getDefaultState();
+
+    private final ChunkPos pos;
+    private final int bottomY;
+    private final int[] topY;                               // Top block Y per column (x + z * 16)
+    private final PalettedContainer<BlockState>[] sections; // null if empty or not copied
+    private final ChunkSummary summary;
+
+    private ChunkSnapshot(ChunkPos pos, int bottomY, int[] topY,
+                          PalettedContainer<BlockState>[] sections, ChunkSummary summary) {
+        this.pos = pos;
+        this.bottomY = bottomY;
+        this.topY = topY;
+        this.sections = sections;
+        this.summary = summary;
+    }
+
+    /**
+     * Copy a chunk on the server thread
+     * @param lowestSection Lowest section index to copy; lower sections read as air
+     */
+    public static ChunkSnapshot copy(WorldChunk chunk, int bottomY, int lowestSection, ChunkSummary summary) {
+        return create(chunk, bottomY, lowestSection, summary, true);
+    }
+
+    /**
+     * View a chunk without copying it, for use on the server thread only
+     */
+    public static ChunkSnapshot live(WorldChunk chunk, int bottomY) {
+        return create(chunk, bottomY, 0, null, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ChunkSnapshot create(WorldChunk chunk, int bottomY, int lowestSection,
+                                        ChunkSummary summary, boolean copy) {
+        int[] topY = sampleTopY(chunk);
+        int maxTopY = Integer.MIN_VALUE;
+        for (int y : topY) maxTopY = Math.max(maxTopY, y);
+
+        ChunkSection[] chunkSections = chunk.getSectionArray();
+        PalettedContainer<BlockState>[] sections = new PalettedContainer[chunkSections.length];
+        int topSection = Math.min(chunkSections.length - 1, (maxTopY - bottomY) >> 4);
+        for (int sectionIndex = Math.max(0, lowestSection); sectionIndex <= topSection; sectionIndex++) {
+            ChunkSection section = chunkSections[sectionIndex];
+            if (section.isEmpty()) continue;
+            sections[sectionIndex] = copy
+                ? section.getBlockStateContainer().copy()
+                : section.getBlockStateContainer();
+        }
+
+        return new ChunkSnapshot(chunk.getPos(), bottomY, topY, sections, summary);
+    }
+
+    /**
+     * WORLD_SURFACE top block of every column of a chunk
+     */
+    public static int[] sampleTopY(WorldChunk chunk) {
+        int[] topY = new int[256];
+        for (int z = 0; z < 16; z++) {
+            for (int x = 0; x < 16; x++) {
+                topY[x + z * 16] = chunk.sampleHeightmap(Heightmap.Type.WORLD_SURFACE, x, z);
+            }
+        }
+        return topY;
+    }
+
+    public ChunkPos getPos() {
+        return pos;
+    }
+
+    /**
+     * @return Summary taken with the snapshot, null for live snapshots
+     */
+    public ChunkSummary getSummary() {
+        return summary;
+    }
+
+    /**
+     * @return Y of the highest non-air block of a column (world X,Z)
+     */
+    public int getTopY(int x, int z) {
+        return topY[(x & 15) + (z & 15) * 16];
+    }
+
+    public int getSectionCount() {
+        return sections.length;
+    }
+
+    /**
+     * @return Block states of a section, or null if it reads as air
+     */
+    public PalettedContainer<BlockState> getSection(int sectionIndex) {
+        return sections[sectionIndex];
+    }
+
+    public BlockState getBlockState(int x, int y, int z) {
+        int sectionIndex = (y - bottomY) >> 4;
+        if (sectionIndex < 0 || sectionIndex >= sections.length || sections[sectionIndex] == null) {
+            return AIR;
+        }
+        return sections[sectionIndex].get(x & 15, y & 15, z & 15);
+    }
+}
@@ -0,0 +1,121 @@
+package io.arona74.crlayers;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.BitSet;
+
+/**
+ * What a chunk can contain, read from its WORLD_SURFACE heightmap and section palettes only
+ * Sections above the highest block are air, so only palettes up to it are checked. Each flag is
+ * "may contain": false means the chunk certainly has no such block, so the work can be skipped.
+ * Fluids are only summarized near the surface, in the sections from the lowest top block - 1 to the
+ * highest top block + 1, so aquifers and flooded caves deeper down do not mark the chunk as wet.
+ */
+public class ChunkSummary {
+    private final ChunkPos pos;
+    private final boolean mappable;      // Some block has a layer mapping
+    private final boolean layerBlocks;   // Some block is a layer block (generated or not)
+    private final int fluidMinY;         // Lowest Y of the sections summarized for fluids
+    private final BitSet fluidSections;  // Summarized sections holding a fluid or waterlogged block, from fluidMinY
+
+    private ChunkSummary(ChunkPos pos, boolean mappable, boolean layerBlocks, int fluidMinY, BitSet fluidSections) {
+        this.pos = pos;
+        this.mappable = mappable;
+        this.layerBlocks = layerBlocks;
+        this.fluidMinY = fluidMinY;
+        this.fluidSections = fluidSections;
+    }
+
+    /**
+     * Summarize a loaded chunk without reading any block of it
+     */
+    public static ChunkSummary of(WorldChunk chunk, int bottomY, BlockStateFlags blockFlags) {
+        int minTopY = Integer.MAX_VALUE;
+        int maxTopY = Integer.MIN_VALUE;
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                int topY = chunk.sampleHeightmap(Heightmap.Type.WORLD_SURFACE, x, z);
+                minTopY = Math.min(minTopY, topY);
+                maxTopY = Math.max(maxTopY, topY);
+            }
+        }
+
+        boolean mappable = false;
+        boolean layerBlocks = false;
+        ChunkSection[] sections = chunk.getSectionArray();
+        int topSection = Math.min(sections.length - 1, (maxTopY - bottomY) >> 4);
+        for (int sectionIndex = 0; sectionIndex <= topSection; sectionIndex++) {
+            ChunkSection section = sections[sectionIndex];
+            if (section.isEmpty()) continue;
+
+            // Palette lookups only, a section's palette is usually a handful of states
+            if (!mappable) {
+                mappable = section.getBlockStateContainer().hasAny(blockFlags::isMappable);
+            }
+            if (!layerBlocks) {
+                layerBlocks = section.getBlockStateContainer().hasAny(blockFlags::isLayerBlock);
+            }
+            if (mappable && layerBlocks) break;
+        }
+
+        // Fluids only in the sections around the top blocks
+        int fluidBottomSection = Math.max(0, (minTopY - 1 - bottomY) >> 4);
+        int fluidTopSection = Math.min(sections.length - 1, (maxTopY + 1 - bottomY) >> 4);
+        BitSet fluidSections = new BitSet();
+        for (int sectionIndex = fluidBottomSection; sectionIndex <= fluidTopSection; sectionIndex++) {
+            ChunkSection section = sections[sectionIndex];
+            if (!section.isEmpty() && section.getBlockStateContainer().hasAny(ChunkSummary::hasFluid)) {
+                fluidSections.set(sectionIndex - fluidBottomSection);
+            }
+        }
+
+        return new ChunkSummary(chunk.getPos(), mappable, layerBlocks,
+            bottomY + (fluidBottomSection << 4), fluidSections);
+    }
+
+    private static boolean hasFluid(BlockState state) {
+        return !state.getFluidState().isEmpty();
+    }
+
+    public ChunkPos getPos() {
+        return pos;
+    }
+
+    /**
+     * @return false if no surface of this chunk can take layers
+     */
+    public boolean hasMappable() {
+        return mappable;
+    }
+
+    /**
+     * @return false if there is nothing to remove in this chunk
+     */
+    public boolean hasLayerBlocks() {
+        return layerBlocks;
+    }
+
+    /**
+     * @return false if no block near the surface of this chunk holds water (or any other fluid)
+     */
+    public boolean hasFluids() {
+        return !fluidSections.isEmpty();
+    }
+
+    /**
+     * Check if blocks between two heights may hold water (or any other fluid)
+     * Heights below the summarized sections are never reported dry; above them there are only air blocks.
+     * @return false if no block of this chunk between minY and maxY holds a fluid
+     */
+    public boolean mayHaveFluids(int minY, int maxY) {
+        if (minY < fluidMinY) return true;
+        int fromSection = (minY - fluidMinY) >> 4;
+        int toSection = (maxY - fluidMinY) >> 4;
+        int wet = fluidSections.nextSetBit(fromSection);
+        return wet >= 0 && wet <= toSection;
+    }
+}
@@ -0,0 +1,185 @@
+package io.arona74.crlayers;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Chamfer distance transform from H blocks over the L blocks of one plateau work unit (DISTANCE mode)
+ * Distances use 3-4 chamfer weights (3 per straight step, 4 per diagonal step), which approximate
+ * Euclidean distance, and are measured along paths inside the plateau, so they bend around holes
+ * and corners of non-convex plateaus. They are computed with a bucket queue (Dial's algorithm) seeded
+ * from the L blocks next to an H block, stopping at the layer distance, so the cost only grows with
+ * the cells that get a layer. Distances never leave a plateau, so units stay independent.
+ * Buffers are sized to the field once and reused for every unit.
+ */
+public class DistanceTransform {
+    private static final int STRAIGHT = 3;
+    private static final int DIAGONAL = 4;
+    private static final int UNREACHED = Integer.MAX_VALUE / 2;
+    private static final int BUCKETS = DIAGONAL + 1;   // Steps add at most DIAGONAL, so a ring of buckets suffices
+
+    private final HeightField field;
+    private final int sizeX;
+    private final int size;
+    private final int[] distances;
+    private final int[][] buckets = new int[BUCKETS][];
+    private final int[] bucketSizes = new int[BUCKETS];
+
+    // Classification of the unit being processed
+    private BitSet eColumns;
+    private BitSet lColumns;
+    private int currentY;
+    private int aboveY;
+
+    public DistanceTransform(HeightField field) {
+        this.field = field;
+        this.sizeX = field.getSizeX();
+        this.size = field.size();
+        this.distances = new int[size];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            buckets[bucket] = new int[64];
+        }
+    }
+
+    /**
+     * Give each L block of a unit a layer value from its distance to the nearest H block
+     * Value at distance d (1 = next to an H block) is 7 - floor(7 * (d - 1) / maxDistance), the
+     * same curve the BASIC / EXTENDED / EXTREME tables follow when there is enough space.
+     * @param cells L blocks of whole plateaus of one level, ascending
+     * @return Number of L blocks that received a layer value
+     */
+    public int spread(int[] cells,
+                      int start,
+                      int end,
+                      int currentY,
+                      int aboveY,
+                      BitSet eColumns,
+                      BitSet lColumns,
+                      LayerGrid layerGrid,
+                      int maxDistance) {
+        this.eColumns = eColumns;
+        this.lColumns = lColumns;
+        this.currentY = currentY;
+        this.aboveY = aboveY;
+
+        // Distances in chamfer units, STRAIGHT per block; farther cells get no layer
+        int limit = maxDistance * STRAIGHT;
+
+        // Seed L blocks next to an H block with one straight step
+        int queued = 0;
+        for (int k = start; k < end; k++) {
+            int index = cells[k];
+            if (hasHNeighbor(index)) {
+                distances[index] = STRAIGHT;
+                push(STRAIGHT, index);
+                queued++;
+            } else {
+                distances[index] = UNREACHED;
+            }
+        }
+
+        // Settle cells in order of distance; a cell queued again with a shorter distance
+        // leaves a stale entry behind, skipped when its distance no longer matches
+        for (int distance = STRAIGHT; distance <= limit && queued > 0; distance++) {
+            int bucket = distance % BUCKETS;
+            int[] entries = buckets[bucket];
+            int count = bucketSizes[bucket];
+            bucketSizes[bucket] = 0;
+            queued -= count;
+
+            for (int k = 0; k < count; k++) {
+                int index = entries[k];
+                if (distances[index] != distance) continue;
+                queued += relaxNeighbors(index, distance, limit);
+            }
+        }
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            bucketSizes[bucket] = 0;
+        }
+
+        // Map distances to layer values
+        int reached = 0;
+        for (int k = start; k < end; k++) {
+            int index = cells[k];
+            int distance = distances[index];
+            if (distance > limit) continue;
+
+            layerGrid.max(index, 7 - 7 * (distance - STRAIGHT) / limit);
+            reached++;
+        }
+
+        return reached;
+    }
+
+    /**
+     * Offer the neighbors of a settled cell a step longer distance
+     * Diagonal steps need a shared cardinal L neighbor, so distances never cross into another plateau.
+     * @return Number of cells queued
+     */
+    private int relaxNeighbors(int index, int distance, int limit) {
+        int dx = index % sizeX;
+        boolean west = dx > 0 && isL(index - 1);
+        boolean east = dx + 1 < sizeX && isL(index + 1);
+        boolean north = index >= sizeX && isL(index - sizeX);
+        boolean south = index + sizeX < size && isL(index + sizeX);
+
+        int queued = 0;
+        int straight = distance + STRAIGHT;
+        if (straight <= limit) {
+            if (west) queued += offer(index - 1, straight);
+            if (east) queued += offer(index + 1, straight);
+            if (north) queued += offer(index - sizeX, straight);
+            if (south) queued += offer(index + sizeX, straight);
+        }
+
+        int diagonal = distance + DIAGONAL;
+        if (diagonal <= limit) {
+            if (index >= sizeX && dx > 0 && (west || north) && isL(index - sizeX - 1)) {
+                queued += offer(index - sizeX - 1, diagonal);
+            }
+            if (index >= sizeX && dx + 1 < sizeX && (east || north) && isL(index - sizeX + 1)) {
+                queued += offer(index - sizeX + 1, diagonal);
+            }
+            if (index + sizeX < size && dx > 0 && (west || south) && isL(index + sizeX - 1)) {
+                queued += offer(index + sizeX - 1, diagonal);
+            }
+            if (index + sizeX < size && dx + 1 < sizeX && (east || south) && isL(index + sizeX + 1)) {
+                queued += offer(index + sizeX + 1, diagonal);
+            }
+        }
+        return queued;
+    }
+
+    private int offer(int index, int distance) {
+        if (distance >= distances[index]) return 0;
+        distances[index] = distance;
+        push(distance, index);
+        return 1;
+    }
+
+    private void push(int distance, int index) {
+        int bucket = distance % BUCKETS;
+        int count = bucketSizes[bucket];
+        if (count == buckets[bucket].length) {
+            buckets[bucket] = Arrays.copyOf(buckets[bucket], count * 2);
+        }
+        buckets[bucket][count] = index;
+        bucketSizes[bucket] = count + 1;
+    }
+
+    private boolean isL(int index) {
+        return lColumns.get(index) && field.getHeight(index) == currentY;
+    }
+
+    private boolean hasHNeighbor(int index) {
+        int dx = index % sizeX;
+        return (dx + 1 < sizeX && isH(index + 1)) ||
+               (dx > 0 && isH(index - 1)) ||
+               (index + sizeX < size && isH(index + sizeX)) ||
+               (index >= sizeX && isH(index - sizeX));
+    }
+
+    private boolean isH(int index) {
+        return eColumns.get(index) && field.getHeight(index) == aboveY;
+    }
+}
@@ -0,0 +1,133 @@
+package io.arona74.crlayers;
+
+import java.util.BitSet;
+
+/**
+ * Columns within reach of an edge, found by dilating the E blocks of a HeightField
+ * L blocks further away can never get a layer value, so spreading and smoothing only need the band.
+ * Dilation works on 64 columns at a time: one step is a few word shifts and ORs over the whole field.
+ */
+public class EdgeBand {
+    private final int sizeX;
+    private final int size;
+    private final int wordCount;
+    private final long[] notFirstColumn; // Clears bits that wrapped into column 0 when shifting east
+    private final long[] notLastColumn;  // Clears bits that wrapped into the last column when shifting west
+    private final long[] shifted;        // Scratch for one shifted copy
+    private final long[] rows;           // Scratch for the row step of a square dilation
+
+    private EdgeBand(HeightField field) {
+        this.sizeX = field.getSizeX();
+        this.size = field.size();
+        this.wordCount = (size + 63) >>> 6;
+        this.notFirstColumn = new long[wordCount];
+        this.notLastColumn = new long[wordCount];
+        this.shifted = new long[wordCount];
+        this.rows = new long[wordCount];
+
+        for (int index = 0; index < size; index++) {
+            int dx = index % sizeX;
+            if (dx != 0) notFirstColumn[index >>> 6] |= 1L << index;
+            if (dx != sizeX - 1) notLastColumn[index >>> 6] |= 1L << index;
+        }
+    }
+
+    /**
+     * Dilate the E blocks of a field into the band of columns that can get layers
+     * @param squareRadius Steps that may move diagonally (distance transform reach)
+     * @param crossRadius Steps that only move to cardinal neighbors (axis spreading and smoothing reach)
+     */
+    public static BitSet around(HeightField field, BitSet eColumns, int squareRadius, int crossRadius) {
+        EdgeBand band = new EdgeBand(field);
+        long[] current = new long[band.wordCount];
+        long[] words = eColumns.toLongArray();
+        System.arraycopy(words, 0, current, 0, Math.min(words.length, current.length));
+
+        long[] next = new long[band.wordCount];
+        for (int step = 0; step < squareRadius + crossRadius; step++) {
+            boolean grew = step < squareRadius
+                ? band.dilateSquare(current, next)
+                : band.dilateCross(current, next);
+            if (!grew) break;
+
+            long[] swap = current;
+            current = next;
+            next = swap;
+        }
+
+        return BitSet.valueOf(current);
+    }
+
+    /**
+     * One step to the 4 cardinal neighbors
+     * @return Whether any column was added
+     */
+    private boolean dilateCross(long[] source, long[] target) {
+        System.arraycopy(source, 0, target, 0, wordCount);
+        orShiftedEastWest(source, target);
+        orShifted(source, target, sizeX);
+        orShifted(source, target, -sizeX);
+        return grew(source, target);
+    }
+
+    /**
+     * One step to all 8 neighbors (a row step followed by a column step)
+     * @return Whether any column was added
+     */
+    private boolean dilateSquare(long[] source, long[] target) {
+        System.arraycopy(source, 0, rows, 0, wordCount);
+        orShiftedEastWest(source, rows);
+
+        System.arraycopy(rows, 0, target, 0, wordCount);
+        orShifted(rows, target, sizeX);
+        orShifted(rows, target, -sizeX);
+        return grew(source, target);
+    }
+
+    private void orShiftedEastWest(long[] source, long[] target) {
+        shift(source, 1, shifted);
+        for (int j = 0; j < wordCount; j++) target[j] |= shifted[j] & notFirstColumn[j];
+        shift(source, -1, shifted);
+        for (int j = 0; j < wordCount; j++) target[j] |= shifted[j] & notLastColumn[j];
+    }
+
+    private void orShifted(long[] source, long[] target, int distance) {
+        shift(source, distance, shifted);
+        for (int j = 0; j < wordCount; j++) target[j] |= shifted[j];
+    }
+
+    /**
+     * Move every bit from index i to i + distance, dropping bits that leave the field
+     */
+    private void shift(long[] source, int distance, long[] target) {
+        int wordShift = Math.abs(distance) >>> 6;
+        int bitShift = Math.abs(distance) & 63;
+
+        if (distance >= 0) {
+            for (int j = wordCount - 1; j >= 0; j--) {
+                int from = j - wordShift;
+                long value = from >= 0 ? source[from] << bitShift : 0;
+                if (bitShift != 0 && from - 1 >= 0) value |= source[from - 1] >>> (64 - bitShift);
+                target[j] = value;
+            }
+        } else {
+            for (int j = 0; j < wordCount; j++) {
+                int from = j + wordShift;
+                long value = from < wordCount ? source[from] >>> bitShift : 0;
+                if (bitShift != 0 && from + 1 < wordCount) value |= source[from + 1] << (64 - bitShift);
+                target[j] = value;
+            }
+        }
+
+        // Clear bits past the last column of the field
+        int tailBits = size & 63;
+        if (tailBits != 0) target[wordCount - 1] &= (1L << tailBits) - 1;
+    }
+
+    private boolean grew(long[] source, long[] target) {
+        for (int j = 0; j < wordCount; j++) {
+            if (source[j] != target[j]) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,260 @@
+package io.arona74.crlayers;
+
+import net.minecraft.block.Block;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Dense surface height grid covering a rectangular block area
+ * Columns are stored row by row (one row of X cells per Z) in primitive arrays,
+ * so every phase of the generator can address a column by a single int index
+ */
+public class HeightField {
+    /**
+     * Height stored for columns without a surface (holes, unloaded chunks)
+     */
+    public static final int NO_SURFACE = Integer.MIN_VALUE;
+
+    private final int minX;
+    private final int minZ;
+    private final int sizeX;
+    private final int sizeZ;
+
+    private final int[] heights;           // Surface Y per column, NO_SURFACE if none
+    private final Block[] surfaceBlocks;   // Surface block per column, null if none
+    private final BitSet mappableColumns;  // Surface block has a layer mapping
+    private final BitSet surfaceWater;     // Water or waterlogged at the surface, or water directly above it
+    private final BitSet waterColumns;     // Water next to or above the surface (mappable columns only)
+    private final BitSet targetColumns;    // Columns layers may be calculated for
+
+    public HeightField(int minX, int minZ, int sizeX, int sizeZ) {
+        this.minX = minX;
+        this.minZ = minZ;
+        this.sizeX = sizeX;
+        this.sizeZ = sizeZ;
+
+        int size = sizeX * sizeZ;
+        this.heights = new int[size];
+        Arrays.fill(heights, NO_SURFACE);
+        this.surfaceBlocks = new Block[size];
+        this.mappableColumns = new BitSet(size);
+        this.surfaceWater = new BitSet(size);
+        this.waterColumns = new BitSet(size);
+        this.targetColumns = new BitSet(size);
+    }
+
+    /**
+     * Create a field covering the bounding box of the given chunks
+     */
+    public static HeightField forChunks(Collection<ChunkPos> chunks) {
+        int minChunkX = Integer.MAX_VALUE;
+        int minChunkZ = Integer.MAX_VALUE;
+        int maxChunkX = Integer.MIN_VALUE;
+        int maxChunkZ = Integer.MIN_VALUE;
+
+        for (ChunkPos chunk : chunks) {
+            minChunkX = Math.min(minChunkX, chunk.x);
+            minChunkZ = Math.min(minChunkZ, chunk.z);
+            maxChunkX = Math.max(maxChunkX, chunk.x);
+            maxChunkZ = Math.max(maxChunkZ, chunk.z);
+        }
+
+        return new HeightField(minChunkX << 4, minChunkZ << 4,
+            (maxChunkX - minChunkX + 1) << 4, (maxChunkZ - minChunkZ + 1) << 4);
+    }
+
+    /**
+     * Create a field covering an inclusive block area
+     */
+    public static HeightField forArea(int minX, int minZ, int maxX, int maxZ) {
+        return new HeightField(minX, minZ, maxX - minX + 1, maxZ - minZ + 1);
+    }
+
+    // ==================== Indexing ====================
+
+    /**
+     * @return Column index for world X,Z, or -1 if outside the field
+     */
+    public int index(int x, int z) {
+        int dx = x - minX;
+        int dz = z - minZ;
+        if (dx < 0 || dz < 0 || dx >= sizeX || dz >= sizeZ) {
+            return -1;
+        }
+        return dz * sizeX + dx;
+    }
+
+    public int getX(int index) {
+        return minX + index % sizeX;
+    }
+
+    public int getZ(int index) {
+        return minZ + index / sizeX;
+    }
+
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMinZ() {
+        return minZ;
+    }
+
+    public int getMaxX() {
+        return minX + sizeX - 1;
+    }
+
+    public int getMaxZ() {
+        return minZ + sizeZ - 1;
+    }
+
+    public int getSizeX() {
+        return sizeX;
+    }
+
+    public int getSizeZ() {
+        return sizeZ;
+    }
+
+    public int size() {
+        return heights.length;
+    }
+
+    // ==================== Heights ====================
+
+    public int getHeight(int index) {
+        return heights[index];
+    }
+
+    /**
+     * @return Surface heights of all columns (shared, do not modify)
+     */
+    public int[] getHeights() {
+        return heights;
+    }
+
+    /**
+     * @return Surface height at world X,Z, or NO_SURFACE if missing or outside the field
+     */
+    public int getHeightAt(int x, int z) {
+        int index = index(x, z);
+        return index < 0 ? NO_SURFACE : heights[index];
+    }
+
+    public boolean hasSurface(int index) {
+        return heights[index] != NO_SURFACE;
+    }
+
+    /**
+     * Record the surface of a column
+     */
+    public void setSurface(int index, int y, Block surfaceBlock) {
+        heights[index] = y;
+        surfaceBlocks[index] = surfaceBlock;
+    }
+
+    /**
+     * @return Surface block of a column, or null if the column has no surface
+     */
+    public Block getSurfaceBlock(int index) {
+        return surfaceBlocks[index];
+    }
+
+    /**
+     * @return Number of columns with a surface
+     */
+    public int getSurfaceCount() {
+        int count = 0;
+        for (int height : heights) {
+            if (height != NO_SURFACE) count++;
+        }
+        return count;
+    }
+
+    // ==================== Placement data ====================
+
+    /**
+     * Mark a column whose surface block has a layer mapping
+     */
+    public void markMappable(int index) {
+        mappableColumns.set(index);
+    }
+
+    public boolean isMappable(int index) {
+        return mappableColumns.get(index);
+    }
+
+    /**
+     * @return Bitset of mappable column indices (shared, do not modify)
+     */
+    public BitSet getMappableColumns() {
+        return mappableColumns;
+    }
+
+    /**
+     * Mark a column whose own surface block is water / waterlogged, or has water on top
+     */
+    public void markSurfaceWater(int index) {
+        surfaceWater.set(index);
+    }
+
+    public boolean hasSurfaceWater(int index) {
+        return surfaceWater.get(index);
+    }
+
+    /**
+     * Mark a column with water on, above or next to its surface
+     */
+    public void markWaterNearby(int index) {
+        waterColumns.set(index);
+    }
+
+    public boolean hasWaterNearby(int index) {
+        return waterColumns.get(index);
+    }
+
+    /**
+     * A column is valid for layer placement if its surface is mappable and not near water
+     */
+    public boolean isValid(int index) {
+        return mappableColumns.get(index) && !waterColumns.get(index);
+    }
+
+    public int getValidCount() {
+        BitSet valid = (BitSet) mappableColumns.clone();
+        valid.andNot(waterColumns);
+        return valid.cardinality();
+    }
+
+    // ==================== Target area ====================
+
+    /**
+     * Mark all columns of a chunk (inside the field) as targets for layer calculation
+     */
+    public void markTarget(ChunkPos chunkPos) {
+        int startX = Math.max(chunkPos.getStartX(), minX);
+        int endX = Math.min(chunkPos.getStartX() + 15, getMaxX());
+        int startZ = Math.max(chunkPos.getStartZ(), minZ);
+        int endZ = Math.min(chunkPos.getStartZ() + 15, getMaxZ());
+        if (startX > endX || startZ > endZ) return;
+
+        for (int z = startZ; z <= endZ; z++) {
+            int rowStart = index(startX, z);
+            targetColumns.set(rowStart, rowStart + (endX - startX) + 1);
+        }
+    }
+
+    public boolean isTarget(int index) {
+        return targetColumns.get(index);
+    }
+
+    /**
+     * @return Bitset of target column indices (shared, do not modify)
+     */
+    public BitSet getTargetColumns() {
+        return targetColumns;
+    }
+}
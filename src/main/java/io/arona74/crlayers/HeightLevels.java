@@ -0,0 +1,137 @@
+package io.arona74.crlayers;
+
+/**
+ * Columns of a HeightField bucketed by surface height
+ * Built once with a counting sort over the field's height range, so each Y level
+ * can be processed by visiting only its own columns
+ */
+public class HeightLevels {
+    private final int[] levels;      // Distinct surface Y levels, highest to lowest
+    private final int[] levelStart;  // Start offset of each level in columns (levels.length + 1 entries)
+    private final int[] columns;     // Column indices grouped by level, ascending within a level
+
+    private HeightLevels(int[] levels, int[] levelStart, int[] columns) {
+        this.levels = levels;
+        this.levelStart = levelStart;
+        this.columns = columns;
+    }
+
+    /**
+     * Bucket all surface columns of a field by height
+     */
+    public static HeightLevels of(HeightField field) {
+        return of(field, false);
+    }
+
+    /**
+     * Bucket all surface columns of a field by height, with every height in range as a level
+     * The level above a block is then always one block higher, and no surface level is the highest
+     * or lowest one, so levels do not depend on which heights happen to exist elsewhere in the field.
+     * Area tiles use this to match each other regardless of their extent.
+     */
+    public static HeightLevels everyHeight(HeightField field) {
+        return of(field, true);
+    }
+
+    private static HeightLevels of(HeightField field, boolean everyHeight) {
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        int surfaceCount = 0;
+
+        for (int index = 0; index < field.size(); index++) {
+            int height = field.getHeight(index);
+            if (height == HeightField.NO_SURFACE) continue;
+            minY = Math.min(minY, height);
+            maxY = Math.max(maxY, height);
+            surfaceCount++;
+        }
+
+        if (surfaceCount == 0) {
+            return new HeightLevels(new int[0], new int[1], new int[0]);
+        }
+
+        // One empty level above and below the surfaces, so every surface level is generated
+        if (everyHeight) {
+            minY--;
+            maxY++;
+        }
+
+        // Count columns per height (bucket 0 = highest Y)
+        int[] counts = new int[maxY - minY + 1];
+        for (int index = 0; index < field.size(); index++) {
+            int height = field.getHeight(index);
+            if (height == HeightField.NO_SURFACE) continue;
+            counts[maxY - height]++;
+        }
+
+        int levelCount = 0;
+        for (int count : counts) {
+            if (count > 0 || everyHeight) levelCount++;
+        }
+
+        // Turn counts into offsets, keeping only non-empty buckets as levels
+        int[] levels = new int[levelCount];
+        int[] levelStart = new int[levelCount + 1];
+        int[] bucketOffset = new int[counts.length];
+        int level = 0;
+        int offset = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            if (counts[bucket] == 0 && !everyHeight) continue;
+            levels[level] = maxY - bucket;
+            levelStart[level] = offset;
+            bucketOffset[bucket] = offset;
+            offset += counts[bucket];
+            level++;
+        }
+        levelStart[levelCount] = offset;
+
+        // Place columns into their buckets (stable, so ascending index within a level)
+        int[] columns = new int[surfaceCount];
+        for (int index = 0; index < field.size(); index++) {
+            int height = field.getHeight(index);
+            if (height == HeightField.NO_SURFACE) continue;
+            columns[bucketOffset[maxY - height]++] = index;
+        }
+
+        return new HeightLevels(levels, levelStart, columns);
+    }
+
+    /**
+     * @return Number of distinct Y levels
+     */
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * @return Y of the level at the given position (0 = highest)
+     */
+    public int getLevel(int level) {
+        return levels[level];
+    }
+
+    /**
+     * @return Number of columns whose surface is at the given level
+     */
+    public int getColumnCount(int level) {
+        return levelStart[level + 1] - levelStart[level];
+    }
+
+    /**
+     * @return Offset of the first column of a level, for use with getColumn
+     */
+    public int getStart(int level) {
+        return levelStart[level];
+    }
+
+    /**
+     * @return Offset one past the last column of a level, for use with getColumn
+     */
+    public int getEnd(int level) {
+        return levelStart[level + 1];
+    }
+
+    public int getColumn(int offset) {
+        return columns[offset];
+    }
+}
@@ -26,6 +26,9 @@ public class LayerConfig {
      * EXTREME: Extreme gradients with 3x distance:
      *   - Uses 3x MAX_LAYER_DISTANCE for spreading
      *   - Very gradual gradients with triple repeated values
+     * DISTANCE: Gradient from the true distance to the nearest edge in any direction:
+     *   - Uses MAX_LAYER_DISTANCE as is, at the same cost for any distance
+     *   - Round gradients around corners instead of axis-aligned ones
      */
     public static GenerationMode MODE = GenerationMode.BASIC;
 
@@ -34,6 +37,7 @@ public class LayerConfig {
      * BASIC mode: Layers fade over this distance (7→6→5→4→3→2→1→0)
      * EXTENDED mode: Automatically uses 2x this distance with repeated value gradients
      * EXTREME mode: Automatically uses 3x this distance with triple repeated value gradients
+     * DISTANCE mode: Layers fade over this distance, stretching the 7→1 gradient to fit
      *
      * Recommended: 5-10 blocks (EXTENDED will use 10-20 blocks, EXTREME will use 15-30 blocks)
      */
@@ -51,7 +55,8 @@ public class LayerConfig {
     public enum GenerationMode {
         BASIC,    // Linear gradient: 7→6→5→4→3→2→1
         EXTENDED, // Extended gradients with 2x distance: 7,7→6,6→5,5→4,4→3,3→2,2→1,1
-        EXTREME   // Extreme gradients with 3x distance: 7,7,7→6,6,6→5,5,5→4,4,4→3,3,3→2,2,2→1,1,1
+        EXTREME,  // Extreme gradients with 3x distance: 7,7,7→6,6,6→5,5,5→4,4,4→3,3,3→2,2,2→1,1,1
+        DISTANCE  // Gradient over the distance to the nearest edge in any direction
     }
 
     /**
@@ -85,6 +90,12 @@ public class LayerConfig {
         DOWN  // Traditional smoothing near edges and always up everywhere else
     }
 
+    /**
+     * Spread and smooth Y levels concurrently once they are classified
+     * Work is split into plateaus that only touch their own cells, so the result is identical to serial processing
+     */
+    public static boolean PARALLEL_LEVELS = true;
+
     static {
         loadConfig();
     }
@@ -173,6 +184,10 @@ public class LayerConfig {
                 CRLayers.LOGGER.warn("Invalid smoothing priority in config, using default");
             }
         }
+
+        if (config.has("parallel_levels")) {
+            PARALLEL_LEVELS = config.get("parallel_levels").getAsBoolean();
+        }
     }
 
     private static void createExternalConfig() {
@@ -215,9 +230,9 @@ public class LayerConfig {
 
             JsonObject config = new JsonObject();
             config.addProperty("_comment", "Configuration for CR Layers generation behavior. Edit this file to customize layer generation.");
-            config.addProperty("_comment_mode", "Generation mode: BASIC (linear gradients 7→6→5→4→3→2→1), EXTENDED (2x distance with repeated values 7,7,6,6,5,5,4,4,3,3,2,2,1,1), or EXTREME (3x distance with triple repeated values 7,7,7→6,6,6→5,5,5→4,4,4→3,3,3→2,2,2→1,1,1)");
+            config.addProperty("_comment_mode", "Generation mode: BASIC (linear gradients 7→6→5→4→3→2→1), EXTENDED (2x distance with repeated values 7,7,6,6,5,5,4,4,3,3,2,2,1,1), EXTREME (3x distance with triple repeated values 7,7,7→6,6,6→5,5,5→4,4,4→3,3,3→2,2,2→1,1,1), or DISTANCE (7→1 stretched over the distance to the nearest edge in any direction)");
             config.addProperty("mode", MODE.name());
-            config.addProperty("_comment_max_layer_distance", "Maximum distance from edges to place layers. EXTENDED mode automatically uses 2x this value, EXTREME mode uses 3x. Recommended: 5-10");
+            config.addProperty("_comment_max_layer_distance", "Maximum distance from edges to place layers. EXTENDED mode automatically uses 2x this value, EXTREME mode uses 3x. DISTANCE mode can use large values at no extra cost. Recommended: 5-10");
             config.addProperty("max_layer_distance", MAX_LAYER_DISTANCE);
             config.addProperty("_comment_edge_height_threshold", "Minimum height difference to detect an edge. 1 = any height change, 2 = only 2+ block differences. Recommended: 1");
             config.addProperty("edge_height_threshold", EDGE_HEIGHT_THRESHOLD);
@@ -227,6 +242,8 @@ public class LayerConfig {
             config.addProperty("smoothing_rounding_mode", SMOOTHING_ROUNDING_MODE.name());
             config.addProperty("_comment_smoothing_priority", "Smoothing priority: UP (preserve higher gradient values), DOWN (traditional smoothing near edges)");
             config.addProperty("smoothing_priority", SMOOTHING_PRIORITY.name());
+            config.addProperty("_comment_parallel_levels", "Process Y levels on multiple threads. Results are identical to single-threaded processing");
+            config.addProperty("parallel_levels", PARALLEL_LEVELS);
 
             try (Writer writer = Files.newBufferedWriter(configPath)) {
                 GSON.newBuilder().setPrettyPrinting().create().toJson(config, writer);
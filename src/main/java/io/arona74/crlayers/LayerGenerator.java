@@ -3,126 +3,257 @@ package io.arona74.crlayers;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
-import net.minecraft.block.enums.DoubleBlockHalf;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.state.property.Properties;
+import net.minecraft.util.Util;
 import net.minecraft.util.WorldSavePath;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
-import net.minecraft.world.Heightmap;
 
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
 
 /**
  * Simplified chunk-based layer generator using distance-from-edge algorithm
  */
 public class LayerGenerator {
+    // Smallest number of L blocks processed as one unit; smaller plateaus are batched
+    private static final int MIN_PLATEAU_UNIT_CELLS = 256;
+    // Smallest unit whose row and column spreading run on separate threads
+    private static final int MIN_PARALLEL_SPREAD_CELLS = 4096;
+    
     private final ServerWorld world;
     private final BlockMappingRegistry mappingRegistry;
     private final PlantMappingRegistry plantMappingRegistry;
     private final PlantDataStorage plantDataStorage;
+    private final BlockStateFlags blockFlags;
     
     public LayerGenerator(ServerWorld world) {
         this.world = world;
         this.mappingRegistry = new BlockMappingRegistry();
         this.plantMappingRegistry = new PlantMappingRegistry();
+        this.blockFlags = BlockStateFlags.build(mappingRegistry, plantMappingRegistry);
         Path worldDir = world.getServer().getSavePath(WorldSavePath.ROOT);
         this.plantDataStorage = new PlantDataStorage(worldDir);
     }
     
     /**
-     * Generate layers in a chunk radius around center position
+     * Generate layers in a chunk radius around center position without blocking the server thread
+     * Must be called on the server thread: chunks of the radius that are not loaded are loaded through
+     * a ChunkLoader, the snapshot is taken once they are, layers are calculated on a worker thread,
+     * and placed back on the server thread through the PlacementQueue. Chunks without layers are released
+     * once the plan is ready, the others as soon as their layers are placed.
+     * @param job Progress and cancellation of the run
+     * @return Number of blocks generated, completed on the server thread
      */
-    public int generateLayers(BlockPos center, int chunkRadius, boolean replacePlants) {
+    public CompletableFuture<Integer> generateLayersAsync(BlockPos center, int chunkRadius, boolean replacePlants,
+                                                          LayerJob job) {
+        LayerSettings settings = LayerSettings.current();
         CRLayers.LOGGER.info("Starting layer generation - Mode: {}, Max Distance: {}", 
-            LayerConfig.MODE, LayerConfig.MAX_LAYER_DISTANCE);
+            settings.getMode(), settings.getMaxLayerDistance());
         
+        List<ChunkPos> chunks = existingChunks(center, chunkRadius);
+        if (chunks.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        job.setChunkCount(chunks.size());
+        job.setPhase(LayerJob.Phase.LOADING);
+        
+        MinecraftServer server = world.getServer();
+        ChunkLoader loader = new ChunkLoader(world);
+        return loader.load(chunks)
+            .thenCompose(loaded -> {
+                if (loaded.isEmpty() || job.isCancelled()) {
+                    return CompletableFuture.completedFuture(0);
+                }
+                job.setChunkCount(loaded.size());
+                job.setPhase(LayerJob.Phase.SNAPSHOT);
+                WorldSnapshot snapshot = snapshotChunks(loaded);
+                return CompletableFuture
+                    .supplyAsync(() -> calculatePlan(snapshot, loaded, settings, job), Util.getMainWorkerExecutor())
+                    .thenComposeAsync(plan -> applyPlanQueued(plan, replacePlants, job, loader), server::execute);
+            })
+            .whenCompleteAsync((blocks, error) -> loader.close(), server::execute);
+    }
+    
+    // ==================== Stages ====================
+    
+    /**
+     * Stage 1 (server thread): copy chunks loaded through a ChunkLoader
+     */
+    public WorldSnapshot snapshotChunks(Collection<ChunkPos> chunks) {
+        return WorldSnapshot.copy(world, chunks, blockFlags);
+    }
+    
+    /**
+     * Chunks in a radius that are loaded or saved to disk (ChunkLoader skips those saved only partly generated)
+     */
+    public List<ChunkPos> existingChunks(BlockPos center, int chunkRadius) {
         ChunkPos centerChunk = new ChunkPos(center);
-        Set<ChunkPos> chunksToProcess = new HashSet<>();
-        
-        for (int dx = -chunkRadius; dx <= chunkRadius; dx++) {
-            for (int dz = -chunkRadius; dz <= chunkRadius; dz++) {
-                ChunkPos chunkPos = new ChunkPos(centerChunk.x + dx, centerChunk.z + dz);
-                if (world.isChunkLoaded(chunkPos.x, chunkPos.z)) {
-                    chunksToProcess.add(chunkPos);
+        return existingChunks(centerChunk.x - chunkRadius, centerChunk.z - chunkRadius,
+            centerChunk.x + chunkRadius, centerChunk.z + chunkRadius);
+    }
+    
+    /**
+     * Chunks in a chunk rectangle that are loaded or saved to disk
+     */
+    private List<ChunkPos> existingChunks(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+        RegionIndex regionIndex = RegionIndex.of(world);
+        List<ChunkPos> chunks = new ArrayList<>();
+        
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                if (world.isChunkLoaded(chunkX, chunkZ) || regionIndex.exists(chunkX, chunkZ)) {
+                    chunks.add(new ChunkPos(chunkX, chunkZ));
                 }
             }
         }
         
-        CRLayers.LOGGER.info("Processing {} loaded chunks", chunksToProcess.size());
-        if (chunksToProcess.isEmpty()) {
-            return 0;
+        CRLayers.LOGGER.info("Processing {} existing chunks", chunks.size());
+        return chunks;
+    }
+    
+    /**
+     * Stage 2 (any thread): scan and calculate layers from a snapshot
+     * Only reads the snapshot and immutable tables, never the world
+     * @param targets Chunks to calculate layers for; the other scanned chunks only provide heights
+     * @param settings Settings copied on the server thread when the run started
+     * @return Plan, empty if there is nothing to place or the job was cancelled
+     */
+    public LayerPlan calculatePlan(WorldSnapshot snapshot, Collection<ChunkPos> targets, LayerSettings settings,
+                                   LayerJob job) {
+        return calculatePlan(snapshot, targets, targets, false, settings, job);
+    }
+    
+    /**
+     * Stage 2 (any thread): scan and calculate the layers of one tile of a larger area
+     * Targets around the placed chunks act as a halo: their layers are calculated so that runs and
+     * smoothing crossing into the placed chunks match a calculation over the whole area.
+     * Every height counts as a level (see HeightLevels.everyHeight), so tiles agree with each other.
+     * @param placed Targets the plan places; job progress counts these
+     */
+    public LayerPlan calculateTilePlan(WorldSnapshot snapshot, Collection<ChunkPos> targets,
+                                       Collection<ChunkPos> placed, LayerSettings settings, LayerJob job) {
+        return calculatePlan(snapshot, targets, placed, true, settings, job);
+    }
+    
+    private LayerPlan calculatePlan(WorldSnapshot snapshot, Collection<ChunkPos> targets,
+                                    Collection<ChunkPos> placed, boolean tile, LayerSettings settings,
+                                    LayerJob job) {
+        // PHASE 0: Nothing to do without mappable blocks (from the chunk summaries)
+        boolean anyMappable = false;
+        for (ChunkPos chunkPos : placed) {
+            anyMappable |= snapshot.getSummary(chunkPos.x, chunkPos.z).hasMappable();
+        }
+        if (!anyMappable) {
+            CRLayers.LOGGER.info("No mappable blocks in any chunk, nothing to generate");
+            return LayerPlan.empty();
+        }
+        
+        List<ChunkPos> chunks = snapshot.getChunks();
+        HeightField field = HeightField.forChunks(chunks);
+        for (ChunkPos chunkPos : targets) {
+            field.markTarget(chunkPos);
         }
         
-        // PHASE 1: Collect ALL surface heights (including holes) for edge detection
-        Map<BlockPos, Integer> allSurfaceHeights = new HashMap<>();
-        for (ChunkPos chunkPos : chunksToProcess) {
-            collectAllSurfaceHeights(chunkPos, allSurfaceHeights);
+        // PHASE 1: Scan ALL surface columns once (including holes): heights for edge
+        // detection, plus surface block and filter flags for placement
+        job.setPhase(LayerJob.Phase.SCANNING);
+        Set<ChunkPos> placedSet = new HashSet<>(placed);
+        SurfaceFinder surfaceFinder = new SurfaceFinder(snapshot, blockFlags);
+        for (ChunkPos chunkPos : chunks) {
+            if (job.isCancelled()) return LayerPlan.empty();
+            scanSurface(chunkPos, field, surfaceFinder, snapshot);
+            if (placedSet.contains(chunkPos)) job.addChunksScanned(1);
         }
+        markWaterColumns(field, snapshot);
         
-        CRLayers.LOGGER.info("Collected {} total surface positions for edge detection", allSurfaceHeights.size());
+        CRLayers.LOGGER.info("Collected {} total surface positions for edge detection", field.getSurfaceCount());
         
-        // PHASE 2: Identify edges using complete heightmap
-        Map<BlockPos, Integer> edges = identifyEdges(allSurfaceHeights);
-        CRLayers.LOGGER.info("Identified {} edge positions", edges.size());
+        // PHASE 2: Classify target columns (E/L) and identify edges in the same sweep
+        if (job.isCancelled()) return LayerPlan.empty();
+        job.setPhase(LayerJob.Phase.CALCULATING);
+        HeightLevels levels = tile ? HeightLevels.everyHeight(field) : HeightLevels.of(field);
+        BitSet eColumns = new BitSet(field.size());
+        BitSet lColumns = new BitSet(field.size());
+        int edgeCount = classifyColumns(field, eColumns, lColumns, settings);
+        CRLayers.LOGGER.info("Identified {} edge positions", edgeCount);
         
-        if (edges.isEmpty()) {
+        // A tile without edges can still get layers when the area as a whole has edges
+        if (edgeCount == 0 && !tile) {
             CRLayers.LOGGER.warn("No edges found");
-            return 0;
+            return LayerPlan.empty();
         }
         
-        // PHASE 3: Collect VALID placement positions (with filtering)
-        Map<BlockPos, Integer> validSurfaceHeights = new HashMap<>();
-        Map<BlockPos, Block> surfaceBlocks = new HashMap<>();
+        // PHASE 3: Count VALID placement positions (filtered during the scan)
+        int validCount = field.getValidCount();
+        CRLayers.LOGGER.info("Collected {} valid surface positions for layer placement", validCount);
         
-        for (ChunkPos chunkPos : chunksToProcess) {
-            collectValidSurfaceData(chunkPos, validSurfaceHeights, surfaceBlocks);
-        }
-        
-        CRLayers.LOGGER.info("Collected {} valid surface positions for layer placement", validSurfaceHeights.size());
-        
-        if (validSurfaceHeights.isEmpty()) {
-            return 0;
+        if (validCount == 0) {
+            return LayerPlan.empty();
         }
         
         // PHASE 4: Calculate layer values using FULL heightmap for distances
-        // but only for VALID positions
-        Map<BlockPos, Integer> layerValues = calculateLayerValues(
-            validSurfaceHeights,  // Only calculate for valid positions
-            allSurfaceHeights,    // But use full heightmap for distance calculations
-            edges, 
-            chunksToProcess
-        );
-        CRLayers.LOGGER.info("Calculated {} positions with layers", layerValues.size());
-        
-        // PHASE 5: Place layer blocks
-        int blocksGenerated = placeAllLayers(layerValues, surfaceBlocks, replacePlants);
-        
-        if (replacePlants && blocksGenerated > 0) {
-            plantDataStorage.save();
-        }
+        // but only for VALID target positions
+        int[] layerValues = calculateLayerValues(field, levels, eColumns, lColumns, settings);
+        CRLayers.LOGGER.info("Calculated {} positions with layers", countLayerValues(layerValues));
+        job.addChunksComputed(placed.size());
         
-        CRLayers.LOGGER.info("Generation complete! Generated {} blocks", blocksGenerated);
-        return blocksGenerated;
+        return new LayerPlan(field, layerValues, new ArrayList<>(placed));
+    }
+    
+    /**
+     * Stage 3 (server thread): queue the layers of a plan for placement under the placement queue's budget
+     * @return Number of blocks generated, completed on the server thread
+     */
+    public CompletableFuture<Integer> applyPlanQueued(LayerPlan plan, boolean replacePlants, LayerJob job) {
+        return applyPlanQueued(plan, replacePlants, job, null);
+    }
+    
+    /**
+     * Stage 3 (server thread): queue the layers of a plan, releasing its chunks from a ChunkLoader
+     * Chunks of the plan without layers are released right away, the others once their layers are placed.
+     * @param loader Loader holding each chunk of the plan once, null if the chunks are not released here
+     * @return Number of blocks generated, completed on the server thread
+     */
+    public CompletableFuture<Integer> applyPlanQueued(LayerPlan plan, boolean replacePlants, LayerJob job,
+                                                      ChunkLoader loader) {
+        if (plan.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        return PlacementQueue.get().submit(new PlaceTask(plan, replacePlants, job, loader));
     }
 
     /**
-     * Collect ALL surface heights without filtering (for edge detection)
+     * Scan all columns of a chunk in a single pass
+     * Records surface height (unfiltered, for edge detection), surface block,
+     * the mappable filter flag and the column's own surface water bit
      */
-    private void collectAllSurfaceHeights(ChunkPos chunkPos, Map<BlockPos, Integer> allHeights) {
+    private void scanSurface(ChunkPos chunkPos, HeightField field, SurfaceFinder surfaceFinder, WorldSnapshot snapshot) {
+        ChunkSummary summary = snapshot.getSummary(chunkPos.x, chunkPos.z);
         int foundInChunk = 0;
         int nullSurface = 0;
-        Set<Integer> uniqueYLevels = new HashSet<>();
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        BitSet uniqueYLevels = new BitSet();
+        int bottomY = snapshot.getBottomY();
+        BlockPos.Mutable columnPos = new BlockPos.Mutable();
         
         for (int x = chunkPos.getStartX(); x <= chunkPos.getStartX() + 15; x++) {
             for (int z = chunkPos.getStartZ(); z <= chunkPos.getStartZ() + 15; z++) {
-                BlockPos columnPos = new BlockPos(x, 0, z);
-                BlockPos surfacePos = findSurfaceBlock(columnPos);
+                columnPos.set(x, 0, z);
                 
-                if (surfacePos != null) {
-                    allHeights.put(surfacePos, surfacePos.getY());
-                    uniqueYLevels.add(surfacePos.getY());
+                if (scanColumn(columnPos, field, surfaceFinder, snapshot, summary)) {
+                    int y = columnPos.getY();
+                    uniqueYLevels.set(y - bottomY);
+                    minY = Math.min(minY, y);
+                    maxY = Math.max(maxY, y);
                     foundInChunk++;
                 } else {
                     nullSurface++;
@@ -131,655 +262,674 @@ public class LayerGenerator {
         }
         
         CRLayers.LOGGER.info("Chunk {}: found {} surfaces ({} null), Y levels: {} (range: {} to {})", 
-            chunkPos, foundInChunk, nullSurface, uniqueYLevels.size(),
-            uniqueYLevels.isEmpty() ? 0 : Collections.min(uniqueYLevels),
-            uniqueYLevels.isEmpty() ? 0 : Collections.max(uniqueYLevels));
+            chunkPos, foundInChunk, nullSurface, uniqueYLevels.cardinality(),
+            foundInChunk == 0 ? 0 : minY,
+            foundInChunk == 0 ? 0 : maxY);
     }
 
     /**
-     * Collect VALID surface data with filtering (for layer placement)
-     */
-    private void collectValidSurfaceData(ChunkPos chunkPos, 
-                                        Map<BlockPos, Integer> surfaceHeights, 
-                                        Map<BlockPos, Block> surfaceBlocks) {
-        for (int x = chunkPos.getStartX(); x <= chunkPos.getStartX() + 15; x++) {
-            for (int z = chunkPos.getStartZ(); z <= chunkPos.getStartZ() + 15; z++) {
-                BlockPos columnPos = new BlockPos(x, 0, z);
-                BlockPos surfacePos = findSurfaceBlock(columnPos);
-                
-                if (surfacePos == null) continue;
-                
-                BlockState surfaceState = world.getBlockState(surfacePos);
-                Block surfaceBlock = surfaceState.getBlock();
-                
-                // Apply filters for valid placement
-                if (!canGenerateLayersOn(surfaceBlock)) continue;
-                if (hasWaterNearby(surfacePos)) continue;
-                
-                surfaceHeights.put(surfacePos, surfacePos.getY());
-                surfaceBlocks.put(surfacePos, surfaceBlock);
-            }
-        }
-    }
-    
-    /**
-     * Process a single chunk with neighbors
+     * Scan a single column into the field
+     * @param columnPos Column to scan; moved to the surface block if one is found
+     * @param summary Summary of the column's chunk, water checks are skipped where it holds no fluids;
+     * null to always check
+     * @return true if the column has a surface
      */
-    public int processChunk(ChunkPos chunkPos, boolean replacePlants) {
-        if (!world.isChunkLoaded(chunkPos.x, chunkPos.z)) {
-            return 0;
-        }
+    private boolean scanColumn(BlockPos.Mutable columnPos, HeightField field, SurfaceFinder surfaceFinder,
+                               WorldSnapshot snapshot, ChunkSummary summary) {
+        int index = field.index(columnPos.getX(), columnPos.getZ());
+        BlockState surfaceState = surfaceFinder.findSurface(columnPos);
         
-        // Get neighbors for proper edge detection
-        Set<ChunkPos> chunksToAnalyze = new HashSet<>();
-        chunksToAnalyze.add(chunkPos);
+        if (surfaceState == null) return false;
         
-        for (int dx = -1; dx <= 1; dx++) {
-            for (int dz = -1; dz <= 1; dz++) {
-                ChunkPos neighbor = new ChunkPos(chunkPos.x + dx, chunkPos.z + dz);
-                if (world.isChunkLoaded(neighbor.x, neighbor.z)) {
-                    chunksToAnalyze.add(neighbor);
-                }
-            }
-        }
-        
-        // Collect ALL surface heights (unfiltered) for edge detection
-        Map<BlockPos, Integer> allSurfaceHeights = new HashMap<>();
-        for (ChunkPos chunk : chunksToAnalyze) {
-            collectAllSurfaceHeights(chunk, allSurfaceHeights);
-        }
-        
-        // Identify edges across all analyzed chunks
-        Map<BlockPos, Integer> edges = identifyEdges(allSurfaceHeights);
+        Block surfaceBlock = surfaceState.getBlock();
+        field.setSurface(index, columnPos.getY(), surfaceBlock);
         
-        // Collect valid surface data (filtered) for placement
-        Map<BlockPos, Integer> validSurfaceHeights = new HashMap<>();
-        Map<BlockPos, Block> surfaceBlocks = new HashMap<>();
-        for (ChunkPos chunk : chunksToAnalyze) {
-            collectValidSurfaceData(chunk, validSurfaceHeights, surfaceBlocks);
+        // Placement filter
+        if (blockFlags.isMappable(surfaceState)) {
+            field.markMappable(index);
         }
         
-        // Calculate layers only for center chunk
-        // Pass BOTH validSurfaceHeights (where to place) and allSurfaceHeights (for distances)
-        Set<ChunkPos> centerOnly = new HashSet<>();
-        centerOnly.add(chunkPos);
-        Map<BlockPos, Integer> layerValues = calculateLayerValues(
-            validSurfaceHeights,   // Only calculate for valid positions
-            allSurfaceHeights,     // But use full heightmap for distance calculations
-            edges, 
-            centerOnly
-        );
-        
-        // Place layers
-        int blocksGenerated = placeAllLayers(layerValues, surfaceBlocks, replacePlants);
-        
-        if (replacePlants && blocksGenerated > 0) {
-            plantDataStorage.save();
+        // Water on this column's own surface, shared with its neighbours by markWaterColumns
+        int y = columnPos.getY();
+        if (summary != null && !summary.mayHaveFluids(y, y + 1)) return true;
+        boolean waterAbove = snapshot.getBlockState(columnPos.setY(y + 1)).getBlock() == Blocks.WATER;
+        columnPos.setY(y);
+        if (waterAbove || isWaterOrWaterlogged(surfaceState)) {
+            field.markSurfaceWater(index);
         }
         
-        return blocksGenerated;
+        return true;
     }
-    
+
     /**
-     * Identify edge positions - only HIGHER blocks at terrain changes
-     * An edge is a block that has at least one neighbor LOWER than itself
+     * Mark mappable columns with water on, above or next to their surface
+     * Must run after all columns are scanned. A cardinal neighbour at the same height is
+     * answered by its surface water bit; only neighbours at another height (or outside
+     * the field) need world reads, at this column's surface and surface + 1.
+     * Neighbours in chunks summarized as holding no fluids at that height are never read.
      */
-    private Map<BlockPos, Integer> identifyEdges(Map<BlockPos, Integer> surfaceHeights) {
-        Map<BlockPos, Integer> edges = new HashMap<>();
-        
-        CRLayers.LOGGER.info("Starting edge detection on {} surface positions", surfaceHeights.size());
+    private void markWaterColumns(HeightField field, WorldSnapshot snapshot) {
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        int[][] cardinalOffsets = {
+            { 0, -1 }, // North
+            { 0, 1 },  // South
+            { 1, 0 },  // East
+            { -1, 0 }  // West
+        };
         
-        // Create X,Z -> BlockPos lookup map for fast neighbor access
-        Map<String, BlockPos> xzLookup = new HashMap<>();
-        for (BlockPos pos : surfaceHeights.keySet()) {
-            String key = pos.getX() + "," + pos.getZ();
-            xzLookup.put(key, pos);
+        for (int index = field.getMappableColumns().nextSetBit(0); index >= 0;
+             index = field.getMappableColumns().nextSetBit(index + 1)) {
+            
+            if (field.hasSurfaceWater(index)) {
+                field.markWaterNearby(index);
+                continue;
+            }
+            
+            int x = field.getX(index);
+            int y = field.getHeight(index);
+            int z = field.getZ(index);
+            
+            for (int[] offset : cardinalOffsets) {
+                int nx = x + offset[0];
+                int nz = z + offset[1];
+                int neighbor = field.index(nx, nz);
+                
+                boolean water;
+                if (neighbor >= 0 && field.getHeight(neighbor) == y) {
+                    water = field.hasSurfaceWater(neighbor);
+                } else if (isDry(snapshot, nx, y, nz)) {
+                    water = false;
+                } else {
+                    water = isWaterOrWaterlogged(snapshot.getBlockState(pos.set(nx, y, nz))) ||
+                            snapshot.getBlockState(pos.set(nx, y + 1, nz)).getBlock() == Blocks.WATER;
+                }
+                
+                if (water) {
+                    field.markWaterNearby(index);
+                    break;
+                }
+            }
         }
-        
+    }
+    
+    /**
+     * Classify every target column once, checking its 8 neighbors (orthogonal + diagonal)
+     * E blocks have lower neighbors OR missing neighbors (holes/edges); valid other columns are L blocks.
+     * Each column has a single surface height, so one sweep classifies all Y levels. The same
+     * neighborhood also decides whether the column is an edge: a block with a neighbor LOWER
+     * by EDGE_HEIGHT_THRESHOLD or more.
+     * @return Number of edge positions found
+     */
+    private int classifyColumns(HeightField field, BitSet eColumns, BitSet lColumns, LayerSettings settings) {
+        int sizeX = field.getSizeX();
         int edgesFound = 0;
-        int positionsWithNeighbors = 0;
-        int heightDifferencesFound = 0;
         int maxHeightDiffSeen = 0;
         
-        for (Map.Entry<BlockPos, Integer> entry : surfaceHeights.entrySet()) {
-            BlockPos pos = entry.getKey();
-            int height = entry.getValue();
+        BitSet targets = field.getTargetColumns();
+        if (targets.isEmpty()) return 0;
+        
+        // Neighbor bounds of the rows holding target columns, whole rows at a time
+        // Missing neighbors (holes/edges) count as Stencils.MISSING, above any height
+        int[] neighborMin = new int[field.size()];
+        int[] neighborMax = new int[field.size()];
+        Stencils.get().neighborBounds(field, targets.nextSetBit(0) / sizeX, (targets.length() - 1) / sizeX + 1,
+            neighborMin, neighborMax);
+        
+        for (int index = targets.nextSetBit(0); index >= 0; index = targets.nextSetBit(index + 1)) {
+            int height = field.getHeight(index);
+            if (height == HeightField.NO_SURFACE) continue;
             
-            // Check all 8 neighbors (cardinals + diagonals)
-            int[] offsets = {-1, 0, 1};
-            boolean hasLowerNeighbor = false;
-            int validNeighborsChecked = 0;
+            // Lowest present neighbor, and whether any neighbor is missing
+            int lowestNeighbor = neighborMin[index];
+            boolean hasMissingNeighbor = neighborMax[index] == Stencils.MISSING;
             
-            for (int dx : offsets) {
-                for (int dz : offsets) {
-                    if (dx == 0 && dz == 0) continue; // Skip self
-                    
-                    // Look up neighbor by X,Z coordinates
-                    String neighborKey = (pos.getX() + dx) + "," + (pos.getZ() + dz);
-                    BlockPos neighborPos = xzLookup.get(neighborKey);
-                    
-                    if (neighborPos == null) {
-                        continue; // No surface block at this X,Z
-                    }
-                    
-                    Integer neighborHeight = surfaceHeights.get(neighborPos);
-                    if (neighborHeight == null) continue;
-                    
-                    validNeighborsChecked++;
-                    int heightDiff = height - neighborHeight;
-                    
-                    // Track statistics
-                    if (heightDiff != 0) {
-                        heightDifferencesFound++;
-                        maxHeightDiffSeen = Math.max(maxHeightDiffSeen, Math.abs(heightDiff));
-                        
-                        if (edgesFound == 0 && heightDifferencesFound <= 5) {
-                            CRLayers.LOGGER.info("Height diff: {} (Y={}) vs {} (Y={}) = diff {}",
-                                pos, height, neighborPos, neighborHeight, heightDiff);
-                        }
-                    }
-                    
-                    // If neighbor is LOWER by threshold or more, this block is an edge
-                    if (heightDiff >= LayerConfig.EDGE_HEIGHT_THRESHOLD) {
-                        hasLowerNeighbor = true;
-                        
-                        if (edgesFound < 10) {
-                            CRLayers.LOGGER.info("EDGE at {} (Y={}) - neighbor {} lower (Y={}, diff={})", 
-                                pos, height, neighborPos, neighborHeight, heightDiff);
-                        }
-                        break;
-                    }
-                }
-                if (hasLowerNeighbor) break;
-            }
+            boolean hasLowerNeighbor = lowestNeighbor < height;
             
-            if (validNeighborsChecked > 0) {
-                positionsWithNeighbors++;
+            // E block if has lower OR missing neighbor (including diagonals)
+            if (hasLowerNeighbor || hasMissingNeighbor) {
+                eColumns.set(index);
+            } else if (field.isValid(index)) {
+                // Only add to L blocks if it's a valid position
+                lColumns.set(index);
             }
             
+            // Edge if a neighbor is LOWER by threshold or more
             if (hasLowerNeighbor) {
-                edges.put(pos, height);
-                edgesFound++;
+                int heightDiff = height - lowestNeighbor;
+                maxHeightDiffSeen = Math.max(maxHeightDiffSeen, heightDiff);
+                if (heightDiff >= settings.getEdgeHeightThreshold()) {
+                    edgesFound++;
+                }
             }
         }
         
-        CRLayers.LOGGER.info("Edge detection: {} positions with neighbors, {} height diffs (max: {}), {} edges found", 
-            positionsWithNeighbors, heightDifferencesFound, maxHeightDiffSeen, edges.size());
+        CRLayers.LOGGER.info("Classification: E={}, L={}, {} edges found (max height diff: {})",
+            eColumns.cardinality(), lColumns.cardinality(), edgesFound, maxHeightDiffSeen);
         
-        return edges;
+        return edgesFound;
     }
     
     /**
      * Calculate layer values using per-Y-level processing with spreading and smoothing
+     * Layers are only calculated for valid target columns, but the full heightmap is used for distances
+     * @param eColumns E blocks of all levels, from classifyColumns
+     * @param lColumns L blocks of all levels, from classifyColumns
+     * @return Layer count per column of the field (0 = no layer)
      */
-    private Map<BlockPos, Integer> calculateLayerValues(Map<BlockPos, Integer> validPositions,
-                                                        Map<BlockPos, Integer> fullHeightmap,
-                                                        Map<BlockPos, Integer> edges,
-                                                        Set<ChunkPos> targetChunks) {
+    private int[] calculateLayerValues(HeightField field, HeightLevels levels, BitSet eColumns, BitSet lColumns,
+                                       LayerSettings settings) {
 
-        Map<BlockPos, Integer> layerValues = new HashMap<>();
+        LayerGrid layerGrid = new LayerGrid(field.size());
+        int[] layerValues = layerGrid.getValues();
 
-        // Get all unique Y levels
-        Set<Integer> allYLevels = new HashSet<>(fullHeightmap.values());
-        List<Integer> sortedYLevels = new ArrayList<>(allYLevels);
-        Collections.sort(sortedYLevels, Collections.reverseOrder()); // Highest to lowest
+        int levelCount = levels.getLevelCount();
 
-        if (sortedYLevels.size() < 2) {
+        if (levelCount < 2) {
             CRLayers.LOGGER.info("Not enough Y levels to process");
             return layerValues;
         }
 
         CRLayers.LOGGER.info("Processing {} Y levels (from {} to {}), Mode: {}",
-            sortedYLevels.size(),
-            sortedYLevels.get(0),
-            sortedYLevels.get(sortedYLevels.size()-1),
-            LayerConfig.MODE);
-        
-        // Create XZ lookup for full heightmap
-        Map<String, Integer> xzToHeight = new HashMap<>();
-        for (Map.Entry<BlockPos, Integer> entry : fullHeightmap.entrySet()) {
-            String key = entry.getKey().getX() + "," + entry.getKey().getZ();
-            xzToHeight.put(key, entry.getValue());
+            levelCount,
+            levels.getLevel(0),
+            levels.getLevel(levelCount - 1),
+            settings.getMode());
+        
+        int maxDistance = settings.getEffectiveMaxDistance();
+        
+        // Only L blocks within spreading + smoothing reach of an edge can get layers
+        // DISTANCE mode reaches diagonally, the axis-aligned modes and smoothing only cardinally
+        boolean distanceMode = settings.getMode() == LayerConfig.GenerationMode.DISTANCE;
+        BitSet band = EdgeBand.around(field, eColumns,
+            distanceMode ? maxDistance : 0,
+            (distanceMode ? 0 : maxDistance) + settings.getSmoothingCycles());
+        BitSet bandColumns = (BitSet) lColumns.clone();
+        bandColumns.and(band);
+        CRLayers.LOGGER.info("Edge band keeps {} of {} L blocks", bandColumns.cardinality(), lColumns.cardinality());
+        
+        // Class bits per column for the smoothing stencils
+        int[] classes = new int[field.size()];
+        for (int index = eColumns.nextSetBit(0); index >= 0; index = eColumns.nextSetBit(index + 1)) {
+            classes[index] = Stencils.E_BLOCK;
+        }
+        for (int index = bandColumns.nextSetBit(0); index >= 0; index = bandColumns.nextSetBit(index + 1)) {
+            classes[index] |= Stencils.L_BLOCK;
         }
         
-        // Track E blocks from previous (higher) Y level
-        Set<BlockPos> previousEBlocks = new HashSet<>();
-        
-        // Process each Y level from highest to lowest
-        for (int i = 0; i < sortedYLevels.size(); i++) {
-            int currentY = sortedYLevels.get(i);
-            
-            // Skip generation on highest and lowest Y levels, but still classify them
-            boolean isHighest = (i == 0);
-            boolean isLowest = (i == sortedYLevels.size() - 1);
-            boolean shouldGenerate = !isHighest && !isLowest;
-            
-            CRLayers.LOGGER.info("Processing Y level {} (generate={})", currentY, shouldGenerate);
-            
-            // Step 1: Classify blocks at this Y level
-            Set<BlockPos> hBlocks = new HashSet<>();
-            Set<BlockPos> eBlocks = new HashSet<>();
-            Set<BlockPos> lBlocks = new HashSet<>();
-            
-            classifyBlocksAtYLevel(currentY, fullHeightmap, xzToHeight, validPositions, 
-                targetChunks, previousEBlocks, hBlocks, eBlocks, lBlocks);
-            
-            CRLayers.LOGGER.info("Y={}: H={}, E={}, L={}", currentY, hBlocks.size(), eBlocks.size(), lBlocks.size());
-            
-            // Only generate layers if not highest/lowest
-            if (shouldGenerate) {
-                // Determine effective max distance based on mode
-                int effectiveMaxDistance = LayerConfig.MAX_LAYER_DISTANCE;
-                if (LayerConfig.MODE == LayerConfig.GenerationMode.EXTENDED) {
-                    effectiveMaxDistance = LayerConfig.MAX_LAYER_DISTANCE * 2;
-                } else if (LayerConfig.MODE == LayerConfig.GenerationMode.EXTREME) {
-                    effectiveMaxDistance = LayerConfig.MAX_LAYER_DISTANCE * 3;
-                }
-
-                // Step 2: Spread layers from H blocks
-                spreadLayersFromHBlocks(currentY, hBlocks, lBlocks, eBlocks, layerValues,
-                    effectiveMaxDistance);
-
-                // Step 3: Smoothing passes
-                for (int cycle = 0; cycle < LayerConfig.SMOOTHING_CYCLES; cycle++) {
-                    smoothingPass(currentY, lBlocks, hBlocks, eBlocks, layerValues);
-                }
+        // Split the L blocks of the generated levels (not the highest and lowest, which
+        // only provide H blocks) into independent plateaus, dropping those without H blocks
+        Plateaus plateaus = Plateaus.of(field, levels, eColumns, bandColumns, MIN_PLATEAU_UNIT_CELLS);
+        int unitCount = plateaus.getUnitCount();
+        CRLayers.LOGGER.info("Found {} plateaus ({} next to H blocks) in {} work units",
+            plateaus.getPlateauCount(), plateaus.getActivePlateauCount(), unitCount);
+        
+        int[] cyclesUsed = new int[unitCount];
+        
+        // Reusable smoothing worklists and distance buffers, one per thread working on plateaus
+        Queue<LayerSmoother> smoothers = new ConcurrentLinkedQueue<>();
+        Queue<DistanceTransform> transforms = new ConcurrentLinkedQueue<>();
+        
+        if (settings.isParallelLevels() && unitCount > 1 && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            // Units only write their own cells and read the shared classification,
+            // so they can run in any order on the ForkJoin pool with identical results
+            IntStream.range(0, unitCount).parallel().forEach(unit -> {
+                LayerSmoother smoother = smoothers.poll();
+                if (smoother == null) smoother = new LayerSmoother(field, classes, settings);
+                DistanceTransform transform = distanceMode ? transforms.poll() : null;
+                if (distanceMode && transform == null) transform = new DistanceTransform(field);
+                cyclesUsed[unit] = generateUnit(field, levels, plateaus, unit, eColumns, bandColumns,
+                    layerGrid, smoother, transform, settings);
+                smoothers.add(smoother);
+                if (transform != null) transforms.add(transform);
+            });
+        } else {
+            LayerSmoother smoother = new LayerSmoother(field, classes, settings);
+            DistanceTransform transform = distanceMode ? new DistanceTransform(field) : null;
+            for (int unit = 0; unit < unitCount; unit++) {
+                cyclesUsed[unit] = generateUnit(field, levels, plateaus, unit, eColumns, bandColumns,
+                    layerGrid, smoother, transform, settings);
             }
-            
-            // Remember E blocks for next (lower) Y level
-            previousEBlocks = eBlocks;
+        }
+        
+        int smoothingCyclesUsed = 0;
+        int maxSmoothingCyclesUsed = 0;
+        for (int cycles : cyclesUsed) {
+            smoothingCyclesUsed += cycles;
+            maxSmoothingCyclesUsed = Math.max(maxSmoothingCyclesUsed, cycles);
+        }
+        
+        if (unitCount > 0) {
+            CRLayers.LOGGER.info("Smoothing used {} cycles over {} units (max {} of {} per unit)",
+                smoothingCyclesUsed, unitCount, maxSmoothingCyclesUsed, settings.getSmoothingCycles());
         }
         
         return layerValues;
     }
 
     /**
-     * Classify all blocks at given Y level into H, E, or L blocks
-     * H blocks are inherited from E blocks of the Y level above
-     * E blocks have lower neighbors OR missing neighbors (holes/edges)
+     * Spread and smooth one work unit (whole plateaus of a single Y level)
+     * Only writes layer values of the unit's own L blocks, so units are independent
+     * @param transform Distance buffer for DISTANCE mode, null for the gradient modes
+     * @return Number of smoothing cycles used
      */
-    private void classifyBlocksAtYLevel(int currentY, 
-                                        Map<BlockPos, Integer> fullHeightmap,
-                                        Map<String, Integer> xzToHeight,
-                                        Map<BlockPos, Integer> validPositions,
-                                        Set<ChunkPos> targetChunks,
-                                        Set<BlockPos> previousEBlocks,
-                                        Set<BlockPos> hBlocks,
-                                        Set<BlockPos> eBlocks,
-                                        Set<BlockPos> lBlocks) {
-        
-        // First, inherit H blocks from previous Y level's E blocks
-        for (BlockPos prevE : previousEBlocks) {
-            // The position directly below an E block becomes an H block
-            BlockPos hPos = new BlockPos(prevE.getX(), currentY, prevE.getZ());
-            
-            // Check if there's terrain at or above current Y at this X,Z
-            String key = hPos.getX() + "," + hPos.getZ();
-            Integer surfaceHeight = xzToHeight.get(key);
-            
-            // If there's terrain at this X,Z and surface is at or above currentY
-            // then there must be a block at currentY (it's inside/below the terrain)
-            if (surfaceHeight != null && surfaceHeight >= currentY) {
-                ChunkPos posChunk = new ChunkPos(hPos);
-                if (targetChunks.contains(posChunk)) {
-                    hBlocks.add(hPos);
-                    CRLayers.LOGGER.info("H block at {} (inherited from E at Y={})", hPos, prevE.getY());
-                }
-            }
+    private int generateUnit(HeightField field,
+                             HeightLevels levels,
+                             Plateaus plateaus,
+                             int unit,
+                             BitSet eColumns,
+                             BitSet lColumns,
+                             LayerGrid layerGrid,
+                             LayerSmoother smoother,
+                             DistanceTransform transform,
+                             LayerSettings settings) {
+        int maxDistance = settings.getEffectiveMaxDistance();
+        int level = plateaus.getUnitLevel(unit);
+        int currentY = levels.getLevel(level);
+        int aboveY = levels.getLevel(level - 1);
+        int[] cells = plateaus.getCells();
+        int start = plateaus.getStart(unit);
+        int end = plateaus.getEnd(unit);
+        
+        // Step 1: Spread layers from H blocks (E blocks of the Y level above)
+        if (transform != null) {
+            // DISTANCE mode: shortest path to an H block within the plateau, in any direction
+            int reached = transform.spread(cells, start, end, currentY, aboveY, eColumns, lColumns,
+                layerGrid, maxDistance);
+            CRLayers.LOGGER.info("Y={}: Distance transform gave layers to {} of {} L blocks",
+                currentY, reached, end - start);
+            return smoother.smooth(cells, start, end, currentY, aboveY, layerGrid.getValues());
         }
         
-        // Find all positions at this Y level
-        for (Map.Entry<BlockPos, Integer> entry : fullHeightmap.entrySet()) {
-            if (entry.getValue() != currentY) continue;
-            
-            BlockPos pos = entry.getKey();
-            
-            // Only process positions in target chunks
-            ChunkPos posChunk = new ChunkPos(pos);
-            if (!targetChunks.contains(posChunk)) continue;
-            
-            // Skip if already classified as H
-            if (hBlocks.contains(pos)) continue;
-            
-            // Check ALL 8 neighbors (orthogonal + diagonal)
-            boolean hasLowerNeighbor = false;
-            boolean hasMissingNeighbor = false;
-            
-            int[] offsets = {-1, 0, 1};
-            for (int dx : offsets) {
-                for (int dz : offsets) {
-                    if (dx == 0 && dz == 0) continue;
-                    
-                    String key = (pos.getX() + dx) + "," + (pos.getZ() + dz);
-                    Integer neighborHeight = xzToHeight.get(key);
-                    
-                    if (neighborHeight == null) {
-                        // Missing neighbor = hole/edge
-                        hasMissingNeighbor = true;
-                    } else if (neighborHeight < currentY) {
-                        hasLowerNeighbor = true;
-                    }
-                }
-            }
-            
-            // E block if has lower OR missing neighbor (including diagonals)
-            if (hasLowerNeighbor || hasMissingNeighbor) {
-                eBlocks.add(pos);
-            } else {
-                // Only add to L blocks if it's a valid position
-                if (validPositions.containsKey(pos)) {
-                    lBlocks.add(pos);
-                }
-            }
+        // Row and column paths cross, so large units sweep both axes at once with atomic max
+        int[] rowPaths;
+        int[] columnPaths;
+        if (settings.isParallelLevels() && end - start >= MIN_PARALLEL_SPREAD_CELLS
+            && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            ForkJoinTask<int[]> rows = ForkJoinTask.adapt(() ->
+                spreadRows(field, cells, start, end, aboveY, eColumns, layerGrid, settings));
+            ForkJoinTask<int[]> columns = ForkJoinTask.adapt(() ->
+                spreadColumns(field, cells, start, end, aboveY, eColumns, layerGrid, settings));
+            ForkJoinTask.invokeAll(rows, columns);
+            rowPaths = rows.join();
+            columnPaths = columns.join();
+        } else {
+            rowPaths = spreadRows(field, cells, start, end, aboveY, eColumns, layerGrid, settings);
+            columnPaths = spreadColumns(field, cells, start, end, aboveY, eColumns, layerGrid, settings);
+        }
+        logPathStats(currentY, end - start, rowPaths, columnPaths);
+        
+        // Step 2: Smoothing passes, until nothing changes or the cycle limit is reached
+        return smoother.smooth(cells, start, end, currentY, aboveY, layerGrid.getValues());
+    }
+
+    private int countLayerValues(int[] layerValues) {
+        int count = 0;
+        for (int value : layerValues) {
+            if (value > 0) count++;
         }
+        return count;
     }
 
     /**
-     * Single smoothing pass
-     * Only smooths L blocks that have at least two cardinal neighbors that are H, E, or have a layer value.
-     * Smoothing calculation and max neighbor comparison consider only cardinal neighbors.
+     * Copy the bits of one Y level's columns from an all-level bitset
+     * H blocks of a level are the E blocks of the level above: the position directly
+     * below an E block (which is always a target column) becomes an H block.
      */
-    private void smoothingPass(int currentY,
-                            Set<BlockPos> lBlocks,
-                            Set<BlockPos> hBlocks,
-                            Set<BlockPos> eBlocks,
-                            Map<BlockPos, Integer> layerValues) {
-        
-        Map<BlockPos, Integer> newValues = new HashMap<>();
-        
-        int[][] cardinalOffsets = {
-            { 1, 0 },  // East
-            { -1, 0 }, // West
-            { 0, 1 },  // South
-            { 0, -1 }  // North
-        };
-        
-        for (BlockPos lBlock : lBlocks) {
-            // Get existing value (from spreading phase)
-            Integer existingValue = layerValues.get(lBlock);
-
-            int sum = 0;
-            int count = 0;
-            int maxCardinalNeighborValue = 0;
-            boolean hasEBlockNeighbor = false;
-
-            // Only consider the 4 cardinal neighbors
-            for (int[] offset : cardinalOffsets) {
-                BlockPos neighbor = new BlockPos(lBlock.getX() + offset[0], currentY, lBlock.getZ() + offset[1]);
-
-                if (hBlocks.contains(neighbor)) {
-                    sum += 8;
-                    count++;
-                    maxCardinalNeighborValue = Math.max(maxCardinalNeighborValue, 8);
-                } else if (eBlocks.contains(neighbor)) {
-                    sum += 0;
-                    count++;
-                    hasEBlockNeighbor = true;
-                } else if (layerValues.containsKey(neighbor)) {
-                    int neighborValue = layerValues.get(neighbor);
-                    sum += neighborValue;
-                    count++;
-                    maxCardinalNeighborValue = Math.max(maxCardinalNeighborValue, neighborValue);
-                }
+    private void selectLevel(HeightLevels levels, int level, BitSet allLevels, BitSet target) {
+        for (int k = levels.getStart(level); k < levels.getEnd(level); k++) {
+            int index = levels.getColumn(k);
+            if (allLevels.get(index)) {
+                target.set(index);
             }
+        }
+    }
 
-            // Require at least two valid cardinal neighbors
-            if (count < 2) continue;
-
-            // Only smooth if max cardinal neighbor value is at least 2
-            if (maxCardinalNeighborValue >= 2) {
-                double average = (double) sum / count;
-                int value;
+    /**
+     * Spread layers from H blocks along rows (W/E paths)
+     * Equivalent to walking from every H block until a non-L block (or maxDistance), but done as
+     * one scanline sweep: each maximal run of L blocks gets the gradient from each end that
+     * touches an H block. Runs never leave a plateau, so the sweep only needs the unit's own cells.
+     * @param cells L blocks of whole plateaus of one level, ascending
+     * @return Path length statistics (index = path length)
+     */
+    private int[] spreadRows(HeightField field,
+                             int[] cells,
+                             int start,
+                             int end,
+                             int aboveY,
+                             BitSet eColumns,
+                             LayerGrid layerGrid,
+                             LayerSettings settings) {
 
-                if (LayerConfig.SMOOTHING_ROUNDING_MODE == LayerConfig.RoundingMode.UP) {
-                    value = (int) Math.ceil(average);
-                } else if (LayerConfig.SMOOTHING_ROUNDING_MODE == LayerConfig.RoundingMode.NEAREST) {
-                    value = (int) Math.round(average);
-                } else { // DOWN
-                    value = (int) Math.floor(average);
-                }
+        int sizeX = field.getSizeX();
+        int[] pathLengthCounts = new int[settings.getEffectiveMaxDistance() + 1];
 
-                // Clamp to valid range 1-7
-                value = Math.max(1, Math.min(7, value));
+        // Runs are consecutive indices within a row
+        for (int k = start; k < end; ) {
+            int first = cells[k];
+            int length = 1;
+            while (k + length < end && cells[k + length] == first + length && (first + length) % sizeX != 0) {
+                length++;
+            }
+            int last = first + length - 1;
 
-                // Ensure smoothed value is strictly less than max cardinal neighbor
-                if (value >= maxCardinalNeighborValue) {
-                    value = maxCardinalNeighborValue - 1;
-                    if (value < 1) value = 1; // safety clamp
-                }
+            boolean hBefore = first % sizeX > 0 && isHBlock(field, eColumns, first - 1, aboveY);
+            boolean hAfter = last % sizeX < sizeX - 1 && isHBlock(field, eColumns, last + 1, aboveY);
+            spreadRun(first, length, 1, hBefore, hAfter, settings, layerGrid, pathLengthCounts);
 
-                // Apply smoothing based on priority mode
-                if (LayerConfig.SMOOTHING_PRIORITY == LayerConfig.SmoothingPriority.UP) {
-                    // UP: Only apply smoothing if it INCREASES the value (preserves extended gradients)
-                    if (existingValue == null || value > existingValue) {
-                        newValues.put(lBlock, value);
-                    }
-                } else {
-                    // DOWN: Hybrid approach
-                    if (hasEBlockNeighbor) {
-                        // Near edges: Traditional smoothing (always apply)
-                        newValues.put(lBlock, value);
-                    } else {
-                        // Away from edges: Preserve gradients (only apply if higher, like UP mode)
-                        if (existingValue == null || value > existingValue) {
-                            newValues.put(lBlock, value);
-                        }
-                    }
-                }
-            }
+            k += length;
         }
-        
-        // Apply new values
-        layerValues.putAll(newValues);
+
+        return pathLengthCounts;
     }
 
     /**
-     * Spread layers from all H blocks in 8 directions
+     * Spread layers from H blocks along columns (N/S paths)
+     * The same sweep as spreadRows over the cells in transposed order
+     * @return Path length statistics (index = path length)
      */
-    private void spreadLayersFromHBlocks(int currentY,
-                                        Set<BlockPos> hBlocks,
-                                        Set<BlockPos> lBlocks,
-                                        Set<BlockPos> eBlocks,
-                                        Map<BlockPos, Integer> layerValues,
-                                        int maxDistance) {
+    private int[] spreadColumns(HeightField field,
+                                int[] cells,
+                                int start,
+                                int end,
+                                int aboveY,
+                                BitSet eColumns,
+                                LayerGrid layerGrid,
+                                LayerSettings settings) {
 
-        // 4 directions: N, E, S, W
-        int[][] directions = {
-            {0, -1},  // N
-            {1, 0},   // E
-            {0, 1},   // S
-            {-1, 0},  // W
-        };
+        int sizeX = field.getSizeX();
+        int sizeZ = field.getSizeZ();
+        int[] pathLengthCounts = new int[settings.getEffectiveMaxDistance() + 1];
 
-        // Track path length statistics
-        Map<Integer, Integer> pathLengthCounts = new HashMap<>();
-        int totalPaths = 0;
-        int pathsWithLayers = 0;
+        int[] transposed = new int[end - start];
+        for (int k = start; k < end; k++) {
+            int index = cells[k];
+            transposed[k - start] = (index % sizeX) * sizeZ + index / sizeX;
+        }
+        Arrays.sort(transposed);
 
-        for (BlockPos hBlock : hBlocks) {
-            for (int dirIdx = 0; dirIdx < directions.length; dirIdx++) {
-                int[] dir = directions[dirIdx];
+        for (int k = 0; k < transposed.length; ) {
+            int firstT = transposed[k];
+            int length = 1;
+            while (k + length < transposed.length && transposed[k + length] == firstT + length
+                && (firstT + length) % sizeZ != 0) {
+                length++;
+            }
 
-                // Walk in this direction and collect L blocks
-                List<BlockPos> pathLBlocks = new ArrayList<>();
+            int first = (firstT % sizeZ) * sizeX + firstT / sizeZ;
+            int last = first + (length - 1) * sizeX;
+            boolean hBefore = first >= sizeX && isHBlock(field, eColumns, first - sizeX, aboveY);
+            boolean hAfter = last + sizeX < field.size() && isHBlock(field, eColumns, last + sizeX, aboveY);
+            spreadRun(first, length, sizeX, hBefore, hAfter, settings, layerGrid, pathLengthCounts);
 
-                for (int step = 1; step <= maxDistance; step++) {
-                    BlockPos checkPos = new BlockPos(
-                        hBlock.getX() + dir[0] * step,
-                        currentY,
-                        hBlock.getZ() + dir[1] * step
-                    );
+            k += length;
+        }
 
-                    // Stop if we hit H or E block
-                    if (hBlocks.contains(checkPos) || eBlocks.contains(checkPos)) {
-                        break;
-                    }
+        return pathLengthCounts;
+    }
 
-                    // Stop if not an L block
-                    if (!lBlocks.contains(checkPos)) {
-                        break;
-                    }
+    private void logPathStats(int currentY, int cellCount, int[] rowPaths, int[] columnPaths) {
+        int[] pathLengthCounts = new int[rowPaths.length];
+        int pathsWithLayers = 0;
+        for (int length = 0; length < pathLengthCounts.length; length++) {
+            pathLengthCounts[length] = rowPaths[length] + columnPaths[length];
+            pathsWithLayers += pathLengthCounts[length];
+        }
+        if (pathsWithLayers > 0) {
+            CRLayers.LOGGER.info("Y={}: Processed {} L blocks ({} paths with layers). Path lengths: {}",
+                currentY, cellCount, pathsWithLayers, formatPathStats(pathLengthCounts));
+        }
+    }
 
-                    pathLBlocks.add(checkPos);
-                }
+    /**
+     * H blocks of a level are the E blocks of the level above
+     */
+    private boolean isHBlock(HeightField field, BitSet eColumns, int index, int aboveY) {
+        return eColumns.get(index) && field.getHeight(index) == aboveY;
+    }
 
-                totalPaths++;
+    /**
+     * Apply gradients to one run of L blocks from each end that touches an H block
+     * @param first Column index of the first cell of the run
+     * @param stride Index step between cells of the run (1 for rows, sizeX for columns)
+     */
+    private void spreadRun(int first,
+                           int length,
+                           int stride,
+                           boolean hBefore,
+                           boolean hAfter,
+                           LayerSettings settings,
+                           LayerGrid layerGrid,
+                           int[] pathLengthCounts) {
 
-                // Apply gradient based on available blocks
-                if (!pathLBlocks.isEmpty()) {
-                    int pathLength = pathLBlocks.size();
-                    pathLengthCounts.put(pathLength, pathLengthCounts.getOrDefault(pathLength, 0) + 1);
-                    pathsWithLayers++;
-                    applyGradient(pathLBlocks, layerValues);
-                }
-            }
-        }
+        int pathLength = Math.min(length, settings.getEffectiveMaxDistance());
 
-        // Log path statistics
-        if (pathsWithLayers > 0) {
-            CRLayers.LOGGER.info("Y={}: Processed {} paths ({} with layers). Path lengths: {}",
-                currentY, totalPaths, pathsWithLayers, formatPathStats(pathLengthCounts));
+        if (hBefore) {
+            applyGradient(first, stride, pathLength, settings.getMode(), layerGrid);
+            pathLengthCounts[pathLength]++;
+        }
+        if (hAfter) {
+            applyGradient(first + (length - 1) * stride, -stride, pathLength, settings.getMode(), layerGrid);
+            pathLengthCounts[pathLength]++;
         }
     }
 
-    private String formatPathStats(Map<Integer, Integer> pathLengthCounts) {
+    private String formatPathStats(int[] pathLengthCounts) {
         StringBuilder sb = new StringBuilder();
-        pathLengthCounts.entrySet().stream()
-            .sorted(Map.Entry.comparingByKey())
-            .forEach(entry -> {
-                if (sb.length() > 0) sb.append(", ");
-                sb.append(entry.getKey()).append("x").append(entry.getValue());
-            });
+        for (int length = 1; length < pathLengthCounts.length; length++) {
+            if (pathLengthCounts[length] == 0) continue;
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(length).append("x").append(pathLengthCounts[length]);
+        }
         return sb.toString();
     }
 
     /**
-     * Apply gradient to a path of L blocks
+     * Apply gradient to a path of L blocks starting next to an H block
+     * @param start Column index of the path cell next to the H block
+     * @param step Index step walking away from the H block
      */
-    private void applyGradient(List<BlockPos> path, Map<BlockPos, Integer> layerValues) {
-        int availableBlocks = path.size();
-        int[] gradient = getGradient(availableBlocks);
+    private void applyGradient(int start, int step, int pathLength, LayerConfig.GenerationMode mode,
+                               LayerGrid layerGrid) {
+        int[] gradient = getGradient(pathLength, mode);
+        int limit = Math.min(pathLength, gradient.length);
 
-        for (int i = 0; i < path.size() && i < gradient.length; i++) {
-            BlockPos pos = path.get(i);
+        for (int i = 0, index = start; i < limit; i++, index += step) {
             int newValue = gradient[i];
 
             // Take max of existing and new value
-            Integer existing = layerValues.get(pos);
-            if (existing == null || newValue > existing) {
-                layerValues.put(pos, newValue);
-            }
+            layerGrid.max(index, newValue);
         }
     }
 
-    private int[] getGradient(int space) {
+    private int[] getGradient(int space, LayerConfig.GenerationMode mode) {
         // EXTREME mode: use extreme gradients with triple repeated values
-        if (LayerConfig.MODE == LayerConfig.GenerationMode.EXTREME) {
+        if (mode == LayerConfig.GenerationMode.EXTREME) {
             return getExtremeNormalGradient(space);
         }
         // EXTENDED mode: use extended gradients with repeated values
-        if (LayerConfig.MODE == LayerConfig.GenerationMode.EXTENDED) {
+        if (mode == LayerConfig.GenerationMode.EXTENDED) {
             return getExtendedNormalGradient(space);
         }
         // BASIC mode: linear gradients
-        if (LayerConfig.MODE == LayerConfig.GenerationMode.BASIC) {
+        if (mode == LayerConfig.GenerationMode.BASIC) {
             return getNormalGradient(space);
         }
-        return new int[0];
+        return NO_GRADIENT;
     }
 
-    private int[] getNormalGradient(int space) {
-        // BASIC mode: linear gradients
-        if (space >= 7) {
-            return new int[]{7, 6, 5, 4, 3, 2, 1};
-        } else if (space == 6) {
-            return new int[]{7, 6, 5, 3, 2, 1};
-        } else if (space == 5) {
-            return new int[]{6, 5, 4, 2, 1};
-        } else if (space == 4) {
-            return new int[]{7, 5, 3, 1};
-        } else if (space == 3) {
-            return new int[]{6, 4, 2};
-        } else if (space == 2) {
-            return new int[]{5, 2};
-        } else if (space == 1) {
-            return new int[]{4};
-        }
-        return new int[0];
-    }
+    private static final int[] NO_GRADIENT = new int[0];
+
+    /**
+     * BASIC mode linear gradients, indexed by available space (0-7)
+     */
+    private static final int[][] NORMAL_GRADIENTS = {
+        {},
+        {4},
+        {5, 2},
+        {6, 4, 2},
+        {7, 5, 3, 1},
+        {6, 5, 4, 2, 1},
+        {7, 6, 5, 3, 2, 1},
+        {7, 6, 5, 4, 3, 2, 1}
+    };
 
     /**
-     * EXTENDED mode gradients with repeated values
+     * EXTENDED mode gradients with repeated values, indexed by available space - 8 (8-14)
      * Creates gradual transitions: 7,7,6,6,5,5,4,4,3,3,2,2,1,1
      */
-    private int[] getExtendedNormalGradient(int space) {
-        // Extended gradients with repetition for longer distances
-        if (space >= 14) {
-            return new int[]{7, 7, 6, 6, 5, 5, 4, 4, 3, 3, 2, 2, 1, 1};
-        } else if (space >= 13) {
-            return new int[]{7, 7, 6, 6, 5, 4, 4, 3, 3, 2, 2, 1, 1};
-        } else if (space >= 12) {
-            return new int[]{7, 7, 6, 6, 5, 4, 4, 3, 2, 2, 1, 1};
-        } else if (space >= 11) {
-            return new int[]{7, 6, 6, 5, 4, 4, 3, 2, 2, 1, 1};
-        } else if (space >= 10) {
-            return new int[]{7, 6, 6, 5, 4, 4, 3, 2, 2, 1};
-        } else if (space >= 9) {
-            return new int[]{7, 6, 6, 5, 4, 4, 3, 2, 1};
-        } else if (space >= 8) {
-            return new int[]{7, 6, 5, 4, 4, 3, 2, 1};
-        }
-        // For space <= 7, fall back to basic gradients
-        else {
-            return getNormalGradient(space);
-        }
-    }
+    private static final int[][] EXTENDED_GRADIENTS = {
+        {7, 6, 5, 4, 4, 3, 2, 1},
+        {7, 6, 6, 5, 4, 4, 3, 2, 1},
+        {7, 6, 6, 5, 4, 4, 3, 2, 2, 1},
+        {7, 6, 6, 5, 4, 4, 3, 2, 2, 1, 1},
+        {7, 7, 6, 6, 5, 4, 4, 3, 2, 2, 1, 1},
+        {7, 7, 6, 6, 5, 4, 4, 3, 3, 2, 2, 1, 1},
+        {7, 7, 6, 6, 5, 5, 4, 4, 3, 3, 2, 2, 1, 1}
+    };
 
     /**
-     * EXTREME mode gradients with triple repeated values
+     * EXTREME mode gradients with triple repeated values, indexed by available space - 15 (15-21)
      * Creates very gradual transitions: 7,7,7,6,6,6,5,5,5,4,4,4,3,3,3,2,2,2,1,1,1
      */
+    private static final int[][] EXTREME_GRADIENTS = {
+        {7, 7, 6, 6, 5, 5, 4, 4, 4, 3, 3, 2, 2, 1, 1},
+        {7, 7, 6, 6, 5, 5, 5, 4, 4, 4, 3, 3, 2, 2, 1, 1},
+        {7, 7, 6, 6, 6, 5, 5, 5, 4, 4, 3, 3, 3, 2, 2, 1, 1},
+        {7, 7, 6, 6, 6, 5, 5, 5, 4, 4, 4, 3, 3, 3, 2, 2, 1, 1},
+        {7, 7, 7, 6, 6, 6, 5, 5, 5, 4, 4, 3, 3, 3, 2, 2, 1, 1, 1},
+        {7, 7, 7, 6, 6, 6, 5, 5, 5, 4, 4, 4, 3, 3, 3, 2, 2, 1, 1, 1},
+        {7, 7, 7, 6, 6, 6, 5, 5, 5, 4, 4, 4, 3, 3, 3, 2, 2, 2, 1, 1, 1}
+    };
+
+    private int[] getNormalGradient(int space) {
+        // BASIC mode: linear gradients
+        if (space <= 0) return NO_GRADIENT;
+        return NORMAL_GRADIENTS[Math.min(space, 7)];
+    }
+
+    private int[] getExtendedNormalGradient(int space) {
+        // For space <= 7, fall back to basic gradients
+        if (space <= 7) return getNormalGradient(space);
+        return EXTENDED_GRADIENTS[Math.min(space, 14) - 8];
+    }
+
     private int[] getExtremeNormalGradient(int space) {
-        // Extreme gradients with triple repetition for very long distances (15-21 blocks)
-        if (space >= 21) {
-            return new int[]{7, 7, 7, 6, 6, 6, 5, 5, 5, 4, 4, 4, 3, 3, 3, 2, 2, 2, 1, 1, 1};
-        } else if (space >= 20) {
-            return new int[]{7, 7, 7, 6, 6, 6, 5, 5, 5, 4, 4, 4, 3, 3, 3, 2, 2, 1, 1, 1};
-        } else if (space >= 19) {
-            return new int[]{7, 7, 7, 6, 6, 6, 5, 5, 5, 4, 4, 3, 3, 3, 2, 2, 1, 1, 1};
-        } else if (space >= 18) {
-            return new int[]{7, 7, 6, 6, 6, 5, 5, 5, 4, 4, 4, 3, 3, 3, 2, 2, 1, 1};
-        } else if (space >= 17) {
-            return new int[]{7, 7, 6, 6, 6, 5, 5, 5, 4, 4, 3, 3, 3, 2, 2, 1, 1};
-        } else if (space >= 16) {
-            return new int[]{7, 7, 6, 6, 5, 5, 5, 4, 4, 4, 3, 3, 2, 2, 1, 1};
-        } else if (space >= 15) {
-            return new int[]{7, 7, 6, 6, 5, 5, 4, 4, 4, 3, 3, 2, 2, 1, 1};
-        }
         // For space <= 14, fall back to extended gradients
-        else {
-            return getExtendedNormalGradient(space);
-        }
+        if (space <= 14) return getExtendedNormalGradient(space);
+        return EXTREME_GRADIENTS[Math.min(space, 21) - 15];
     }
     
     /**
-     * Place all layer blocks
+     * Place the layer blocks of a plan chunk by chunk, one column per step
+     * Chunks without layers are skipped, columns of chunks unloaded since the snapshot was taken
+     * are skipped, and a cancelled job stops before its next chunk.
      */
-    private int placeAllLayers(Map<BlockPos, Integer> layerValues, 
-                              Map<BlockPos, Block> surfaceBlocks, 
-                              boolean replacePlants) {
-        int blocksGenerated = 0;
-        int plantsReplaced = 0;
-        
-        for (Map.Entry<BlockPos, Integer> entry : layerValues.entrySet()) {
-            BlockPos surfacePos = entry.getKey();
-            int layerCount = entry.getValue();
-            Block surfaceBlock = surfaceBlocks.get(surfacePos);
+    private class PlaceTask implements PlacementQueue.Task {
+        private final HeightField field;
+        private final int[] layerValues;
+        private final List<ChunkPos> chunks;
+        private final boolean replacePlants;
+        private final LayerJob job;
+        private final ChunkLoader loader;
+        private final boolean[] chunkHasLayers;
+        private int chunkIndex = -1;
+        private int column = 256;
+        private int chunkBlocks;
+        private int blocksGenerated;
+        private int plantsReplaced;
+        
+        /**
+         * @param loader Loader holding each chunk of the plan once, released chunk by chunk; null if the
+         * chunks are not released here
+         */
+        PlaceTask(LayerPlan plan, boolean replacePlants, LayerJob job, ChunkLoader loader) {
+            this.field = plan.getField();
+            this.layerValues = plan.getLayerValues();
+            this.chunks = plan.getChunks();
+            this.replacePlants = replacePlants;
+            this.job = job;
+            this.loader = loader;
+            
+            // Chunks without layers are never touched, so their tickets are not needed
+            this.chunkHasLayers = new boolean[chunks.size()];
+            for (int k = 0; k < chunks.size(); k++) {
+                chunkHasLayers[k] = hasLayers(chunks.get(k));
+                if (!chunkHasLayers[k] && loader != null) {
+                    loader.release(List.of(chunks.get(k)));
+                }
+            }
+        }
+        
+        @Override
+        public boolean step() {
+            if (column == 256 && !nextChunk()) return false;
+            
+            ChunkPos chunkPos = chunks.get(chunkIndex);
+            int index = field.index(chunkPos.getStartX() + (column >> 4), chunkPos.getStartZ() + (column & 15));
+            column++;
+            if (index >= 0 && layerValues[index] > 0) {
+                placeColumn(index);
+            }
+            return true;
+        }
+        
+        /**
+         * Move to the next chunk holding layers, releasing the chunk just placed
+         * @return false once all chunks are done
+         */
+        private boolean nextChunk() {
+            if (chunkIndex >= 0) {
+                job.addChunksApplied(1);
+                job.addBlocks(blocksGenerated - chunkBlocks);
+                chunkBlocks = blocksGenerated;
+                if (loader != null) loader.release(List.of(chunks.get(chunkIndex)));
+            }
+            
+            while (!job.isCancelled() && ++chunkIndex < chunks.size()) {
+                if (!chunkHasLayers[chunkIndex]) {
+                    job.addChunksApplied(1);
+                    continue;
+                }
+                job.setPhase(LayerJob.Phase.PLACING);
+                column = 0;
+                return true;
+            }
+            return false;
+        }
+        
+        private boolean hasLayers(ChunkPos chunkPos) {
+            for (int offset = 0; offset < 256; offset++) {
+                int index = field.index(chunkPos.getStartX() + (offset >> 4), chunkPos.getStartZ() + (offset & 15));
+                if (index >= 0 && layerValues[index] > 0) return true;
+            }
+            return false;
+        }
+        
+        @Override
+        public int finish() {
+            if (plantsReplaced > 0) {
+                CRLayers.LOGGER.info("Replaced {} plants with Conquest variants", plantsReplaced);
+            }
+            if (replacePlants && blocksGenerated > 0) {
+                plantDataStorage.save();
+            }
+            
+            CRLayers.LOGGER.info("Generation complete! Generated {} blocks", blocksGenerated);
+            return blocksGenerated;
+        }
+        
+        private void placeColumn(int index) {
+            int layerCount = layerValues[index];
             
-            if (surfaceBlock == null) continue;
+            Block surfaceBlock = field.getSurfaceBlock(index);
+            if (surfaceBlock == null) return;
+            if (!world.isChunkLoaded(field.getX(index) >> 4, field.getZ(index) >> 4)) return;
             
-            Block layerBlock = mappingRegistry.getLayerBlock(surfaceBlock, layerCount);
-            if (layerBlock == null) continue;
+            BlockPos surfacePos = new BlockPos(field.getX(index), field.getHeight(index), field.getZ(index));
+            
+            // Pre-resolved layer state for this surface block and layer count
+            BlockState layerState = mappingRegistry.getLayerState(surfaceBlock, layerCount);
             
             BlockPos layerPos = surfacePos.up();
             BlockState existingState = world.getBlockState(layerPos);
@@ -787,315 +937,282 @@ public class LayerGenerator {
             // Handle plant replacement
             if (replacePlants && !existingState.isAir()) {
                 Block existingBlock = existingState.getBlock();
-                
-                if (plantMappingRegistry.isConquestPlant(existingBlock)) {
-                    continue; // Skip existing conquest plants
+            
+                if (blockFlags.isConquestPlant(existingState)) {
+                    return; // Skip existing conquest plants
                 }
-                
-                if (plantMappingRegistry.isReplaceablePlant(existingBlock)) {
-                    boolean isTallPlant = isTallPlant(existingBlock);
-                    
+            
+                if (blockFlags.isReplaceablePlant(existingState)) {
+                    boolean isTallPlant = blockFlags.isTallPlant(existingState);
+            
                     if (isTallPlant) {
                         BlockPos upperPos = layerPos.up();
                         BlockState upperState = world.getBlockState(upperPos);
                         Block upperPlantBlock = upperState.getBlock();
                         plantDataStorage.storePlant(upperPos, upperPlantBlock);
                     }
-                    
+            
                     plantDataStorage.storePlant(layerPos, existingBlock);
                     if (isTallPlant) {
                         plantDataStorage.storeTallPlant(layerPos, true);
                     }
-                    
+            
                     // Place layer
-                    BlockState layerState = layerBlock.getDefaultState();
-                    if (layerState.contains(Properties.LAYERS)) {
-                        layerState = layerState.with(Properties.LAYERS, Math.min(layerCount, 8));
-                    }
                     world.setBlockState(layerPos, layerState);
-
+            
                     // Place Conquest plant on top - matching the layer height beneath it
-                    Block conquestPlant = plantMappingRegistry.getConquestPlant(existingBlock);
-                    if (conquestPlant != null) {
+                    PlantMappingRegistry.Replacement replacement = plantMappingRegistry.getReplacement(existingBlock);
+                    if (replacement != null) {
                         BlockPos plantPos = layerPos.up();
-                        
-                        // Get the layer count we just placed (the block beneath the plant)
-                        int plantLayerCount = layerCount;
-                        
-                        if (isTallPlant && isTallPlant(conquestPlant)) {
-                            BlockState lowerState = conquestPlant.getDefaultState();
-                            if (lowerState.contains(Properties.DOUBLE_BLOCK_HALF)) {
-                                lowerState = lowerState.with(Properties.DOUBLE_BLOCK_HALF, 
-                                    DoubleBlockHalf.LOWER);
-                            }
-                            if (lowerState.contains(Properties.LAYERS)) {
-                                lowerState = lowerState.with(Properties.LAYERS, Math.min(plantLayerCount, 8));
-                            }
-                            world.setBlockState(plantPos, lowerState);
-                            
+            
+                        if (isTallPlant && replacement.isTall()) {
+                            world.setBlockState(plantPos, replacement.getLowerState(layerCount));
+            
                             BlockPos upperPlantPos = plantPos.up();
                             if (world.getBlockState(upperPlantPos).isAir()) {
-                                BlockState upperState = conquestPlant.getDefaultState();
-                                if (upperState.contains(Properties.DOUBLE_BLOCK_HALF)) {
-                                    upperState = upperState.with(Properties.DOUBLE_BLOCK_HALF,
-                                        DoubleBlockHalf.UPPER);
-                                }
-                                if (upperState.contains(Properties.LAYERS)) {
-                                    upperState = upperState.with(Properties.LAYERS, Math.min(plantLayerCount, 8));
-                                }
-                                world.setBlockState(upperPlantPos, upperState);
+                                world.setBlockState(upperPlantPos, replacement.getUpperState(layerCount));
                             }
                         } else {
                             if (world.getBlockState(plantPos).isAir()) {
-                                BlockState plantState = conquestPlant.getDefaultState();
-                                if (plantState.contains(Properties.LAYERS)) {
-                                    plantState = plantState.with(Properties.LAYERS, Math.min(plantLayerCount, 8));
-                                }
-                                world.setBlockState(plantPos, plantState);
+                                world.setBlockState(plantPos, replacement.getSingleState(layerCount));
                             }
                         }
                         plantsReplaced++;
                     }
-                    
+            
                     blocksGenerated++;
-                    continue;
+                    return;
                 }
             }
             
             // Normal placement
             if (existingState.isAir() || existingState.isReplaceable()) {
-                BlockState layerState = layerBlock.getDefaultState();
-                
-                if (layerState.contains(Properties.LAYERS)) {
-                    layerState = layerState.with(Properties.LAYERS, Math.min(layerCount, 8));
-                }
-                
                 world.setBlockState(layerPos, layerState);
                 blocksGenerated++;
             }
         }
-        
-        if (plantsReplaced > 0) {
-            CRLayers.LOGGER.info("Replaced {} plants with Conquest variants", plantsReplaced);
-        }
-        
-        return blocksGenerated;
     }
     
     /**
-     * Remove layers in chunk radius
+     * Remove layers in chunk radius, a few columns per tick under the placement queue's budget
+     * Must be called on the server thread. Chunks of the radius that are not loaded are loaded
+     * through a ChunkLoader first, and released one by one once their layers are removed.
+     * @param job Progress and cancellation of the run
+     * @return Number of blocks removed, completed on the server thread
      */
-    public int removeLayers(BlockPos center, int chunkRadius, boolean restorePlants) {
-        ChunkPos centerChunk = new ChunkPos(center);
-        int blocksRemoved = 0;
-        int plantsRestored = 0;
+    public CompletableFuture<Integer> removeLayersQueued(BlockPos center, int chunkRadius, boolean restorePlants,
+                                                         LayerJob job) {
+        List<ChunkPos> chunks = existingChunks(center, chunkRadius);
+        job.setChunkCount(chunks.size());
+        job.setPhase(LayerJob.Phase.LOADING);
+        
+        ChunkLoader loader = new ChunkLoader(world);
+        return loader.load(chunks)
+            .thenCompose(loaded -> PlacementQueue.get().submit(new RemoveTask(loaded, restorePlants, job, loader)))
+            .whenCompleteAsync((blocks, error) -> loader.close(), world.getServer()::execute);
+    }
+    
+    /**
+     * Remove the layer blocks of the loaded chunks of a list, one column per step
+     * Chunks are checked when the task reaches them, so chunks loaded or unloaded meanwhile are handled.
+     * A cancelled job stops before its next chunk.
+     */
+    private class RemoveTask implements PlacementQueue.Task {
+        private final List<ChunkPos> chunks;
+        private final boolean restorePlants;
+        private final LayerJob job;
+        private final ChunkLoader loader;
+        private final BlockPos.Mutable columnPos = new BlockPos.Mutable();
+        private int chunkIndex = -1;
+        private int column = 256;
+        private SurfaceFinder surfaceFinder;
+        private int chunkBlocks;
+        private int blocksRemoved;
+        private int plantsRestored;
+        private int chunksSkipped;
+        
+        /**
+         * @param loader Loader holding the chunks, released chunk by chunk
+         */
+        RemoveTask(List<ChunkPos> chunks, boolean restorePlants, LayerJob job, ChunkLoader loader) {
+            this.chunks = chunks;
+            this.restorePlants = restorePlants;
+            this.job = job;
+            this.loader = loader;
+            job.setChunkCount(chunks.size());
+            job.setPhase(LayerJob.Phase.REMOVING);
+        }
+        
+        @Override
+        public boolean step() {
+            if (column == 256 && !nextChunk()) return false;
+            
+            ChunkPos chunkPos = chunks.get(chunkIndex);
+            removeColumn(chunkPos.getStartX() + (column >> 4), chunkPos.getStartZ() + (column & 15));
+            column++;
+            return true;
+        }
         
-        for (int dx = -chunkRadius; dx <= chunkRadius; dx++) {
-            for (int dz = -chunkRadius; dz <= chunkRadius; dz++) {
-                ChunkPos chunkPos = new ChunkPos(centerChunk.x + dx, centerChunk.z + dz);
+        /**
+         * Move to the next loaded chunk holding layer blocks
+         * @return false once all chunks are done
+         */
+        private boolean nextChunk() {
+            if (chunkIndex >= 0) {
+                job.addChunksApplied(1);
+                job.addBlocks(blocksRemoved - chunkBlocks);
+                chunkBlocks = blocksRemoved;
+                releaseChunk();
+            }
+            
+            while (!job.isCancelled() && ++chunkIndex < chunks.size()) {
+                ChunkPos chunkPos = chunks.get(chunkIndex);
+                if (!world.isChunkLoaded(chunkPos.x, chunkPos.z)) {
+                    job.addChunksApplied(1);
+                    releaseChunk();
+                    continue;
+                }
                 
-                if (!world.isChunkLoaded(chunkPos.x, chunkPos.z)) continue;
+                // No layer block in any palette, nothing to remove
+                ChunkSummary summary = ChunkSummary.of(world.getChunk(chunkPos.x, chunkPos.z), world.getBottomY(), blockFlags);
+                if (!summary.hasLayerBlocks()) {
+                    job.addChunksApplied(1);
+                    chunksSkipped++;
+                    releaseChunk();
+                    continue;
+                }
                 
-                for (int x = chunkPos.getStartX(); x <= chunkPos.getStartX() + 15; x++) {
-                    for (int z = chunkPos.getStartZ(); z <= chunkPos.getStartZ() + 15; z++) {
-                        BlockPos columnPos = new BlockPos(x, 0, z);
-                        BlockPos surfacePos = findSurfaceBlock(columnPos);
-                        
-                        if (surfacePos == null) continue;
-                        
-                        BlockPos layerPos = surfacePos.up();
-                        BlockState layerState = world.getBlockState(layerPos);
-                        Block layerBlock = layerState.getBlock();
+                // Fresh finder per chunk: its cached sections must not outlive earlier ticks' changes
+                surfaceFinder = new SurfaceFinder(WorldSnapshot.live(world), blockFlags);
+                column = 0;
+                return true;
+            }
+            return false;
+        }
+        
+        private void releaseChunk() {
+            loader.release(List.of(chunks.get(chunkIndex)));
+        }
+        
+        @Override
+        public int finish() {
+            if (restorePlants && plantsRestored > 0) {
+                plantDataStorage.save();
+                CRLayers.LOGGER.info("Restored {} vanilla plants", plantsRestored);
+            }
+            
+            CRLayers.LOGGER.info("Removed {} layer blocks ({} chunks without layer blocks skipped)",
+                blocksRemoved, chunksSkipped);
+            return blocksRemoved;
+        }
+        
+        private void removeColumn(int x, int z) {
+            // The chunk may have been unloaded since an earlier tick
+            if (!world.isChunkLoaded(x >> 4, z >> 4)) return;
+            
+            columnPos.set(x, 0, z);
+            if (surfaceFinder.findSurface(columnPos) == null) return;
+            
+            BlockPos layerPos = columnPos.up();
+            BlockState layerState = world.getBlockState(layerPos);
+            
+            if (blockFlags.isLayerBlock(layerState)) {
+                BlockPos plantPos = layerPos.up();
+                BlockState plantState = world.getBlockState(plantPos);
+                
+                if (restorePlants) {
+                    if (blockFlags.isConquestPlant(plantState)) {
+                        if (blockFlags.isTallPlant(plantState)) {
+                            BlockPos upperPos = plantPos.up();
+                            world.setBlockState(upperPos, Blocks.AIR.getDefaultState());
+                        }
+                        world.setBlockState(plantPos, Blocks.AIR.getDefaultState());
+                    }
+                    
+                    if (plantDataStorage.hasPlantData(layerPos)) {
+                        Block originalPlant = plantDataStorage.getPlant(layerPos);
+                        boolean wasTallPlant = plantDataStorage.isTallPlant(layerPos);
                         
-                        if (isLayerBlock(layerBlock)) {
-                            BlockPos plantPos = layerPos.up();
-                            BlockState plantState = world.getBlockState(plantPos);
-                            Block plantBlock = plantState.getBlock();
+                        if (originalPlant != null) {
+                            PlantMappingRegistry.Restoration restoration =
+                                plantMappingRegistry.getRestoration(originalPlant);
                             
-                            if (restorePlants) {
-                                if (plantMappingRegistry.isConquestPlant(plantBlock)) {
-                                    if (isTallPlant(plantBlock)) {
-                                        BlockPos upperPos = plantPos.up();
-                                        world.setBlockState(upperPos, Blocks.AIR.getDefaultState());
-                                    }
-                                    world.setBlockState(plantPos, Blocks.AIR.getDefaultState());
-                                }
+                            if (wasTallPlant && restoration.isTall()) {
+                                world.setBlockState(layerPos, restoration.getLowerState());
                                 
-                                if (plantDataStorage.hasPlantData(layerPos)) {
-                                    Block originalPlant = plantDataStorage.getPlant(layerPos);
-                                    boolean wasTallPlant = plantDataStorage.isTallPlant(layerPos);
-                                    
-                                    if (originalPlant != null) {
-                                        if (wasTallPlant && isTallPlant(originalPlant)) {
-                                            BlockState lowerState = originalPlant.getDefaultState();
-                                            if (lowerState.contains(Properties.DOUBLE_BLOCK_HALF)) {
-                                                lowerState = lowerState.with(Properties.DOUBLE_BLOCK_HALF,
-                                                    DoubleBlockHalf.LOWER);
-                                            }
-                                            world.setBlockState(layerPos, lowerState);
-                                            
-                                            BlockPos upperPos = layerPos.up();
-                                            Block upperPlant = plantDataStorage.getPlant(upperPos);
-                                            if (upperPlant != null) {
-                                                BlockState upperState = upperPlant.getDefaultState();
-                                                if (upperState.contains(Properties.DOUBLE_BLOCK_HALF)) {
-                                                    upperState = upperState.with(Properties.DOUBLE_BLOCK_HALF,
-                                                        DoubleBlockHalf.UPPER);
-                                                }
-                                                world.setBlockState(upperPos, upperState);
-                                                plantDataStorage.removePlant(upperPos);
-                                            }
-                                        } else {
-                                            world.setBlockState(layerPos, originalPlant.getDefaultState());
-                                        }
-                                        
-                                        plantDataStorage.removePlant(layerPos);
-                                        plantDataStorage.removeTallPlantFlag(layerPos);
-                                        plantsRestored++;
-                                        blocksRemoved++;
-                                        continue;
-                                    }
+                                BlockPos upperPos = layerPos.up();
+                                Block upperPlant = plantDataStorage.getPlant(upperPos);
+                                if (upperPlant != null) {
+                                    world.setBlockState(upperPos,
+                                        plantMappingRegistry.getRestoration(upperPlant).getUpperState());
+                                    plantDataStorage.removePlant(upperPos);
                                 }
+                            } else {
+                                world.setBlockState(layerPos, restoration.getSingleState());
                             }
                             
-                            world.setBlockState(layerPos, Blocks.AIR.getDefaultState());
+                            plantDataStorage.removePlant(layerPos);
+                            plantDataStorage.removeTallPlantFlag(layerPos);
+                            plantsRestored++;
                             blocksRemoved++;
+                            return;
                         }
                     }
                 }
+                
+                world.setBlockState(layerPos, Blocks.AIR.getDefaultState());
+                blocksRemoved++;
             }
         }
-        
-        if (restorePlants && plantsRestored > 0) {
-            plantDataStorage.save();
-            CRLayers.LOGGER.info("Restored {} vanilla plants", plantsRestored);
-        }
-        
-        CRLayers.LOGGER.info("Removed {} layer blocks", blocksRemoved);
-        return blocksRemoved;
     }
     
     // ==================== Helper Methods ====================
     
-    private boolean isLayerBlock(Block block) {
-        if (block == Blocks.SNOW) return true;
-        String blockId = net.minecraft.registry.Registries.BLOCK.getId(block).toString();
-        return blockId.contains("layer") || blockId.contains("slab");
+    /**
+     * Check if the chunk of a column is summarized as holding no fluids at y and y + 1
+     */
+    private boolean isDry(WorldSnapshot snapshot, int x, int y, int z) {
+        ChunkSummary summary = snapshot.getSummary(x >> 4, z >> 4);
+        return summary != null && !summary.mayHaveFluids(y, y + 1);
     }
     
-    private boolean isTallPlant(Block block) {
-        return block == Blocks.TALL_GRASS ||
-               block == Blocks.LARGE_FERN ||
-               block == Blocks.SUNFLOWER ||
-               block == Blocks.LILAC ||
-               block == Blocks.ROSE_BUSH ||
-               block == Blocks.PEONY ||
-               block.getDefaultState().contains(Properties.DOUBLE_BLOCK_HALF);
+    private boolean isWaterOrWaterlogged(BlockState state) {
+        if (state.getBlock() == Blocks.WATER) return true;
+        return state.contains(Properties.WATERLOGGED) && state.get(Properties.WATERLOGGED);
     }
-    
-    private BlockPos findSurfaceBlock(BlockPos pos) {
-        // Start from world surface heightmap
-        int surfaceY = world.getTopY(Heightmap.Type.WORLD_SURFACE, pos.getX(), pos.getZ());
-        BlockPos surfacePos = new BlockPos(pos.getX(), surfaceY, pos.getZ());
-        
-        // Walk down to find actual solid terrain (skip air, plants, leaves)
-        while (surfacePos.getY() > world.getBottomY()) {
-            BlockState state = world.getBlockState(surfacePos);
-            Block block = state.getBlock();
-            
-            // Skip air
-            if (state.isAir()) {
-                surfacePos = surfacePos.down();
-                continue;
-            }
-            
-            // Skip leaves
-            if (block.getDefaultState().isIn(net.minecraft.registry.tag.BlockTags.LEAVES)) {
-                surfacePos = surfacePos.down();
-                continue;
-            }
-
-            // Skip mushroom blocks (big mushroom structures)
-            if (block == Blocks.BROWN_MUSHROOM_BLOCK ||
-                block == Blocks.RED_MUSHROOM_BLOCK ||
-                block == Blocks.MUSHROOM_STEM) {
-                surfacePos = surfacePos.down();
-                continue;
-            }
 
-            // Skip plants and flowers
-            if (block.getDefaultState().isIn(net.minecraft.registry.tag.BlockTags.FLOWERS) ||
-                block.getDefaultState().isIn(net.minecraft.registry.tag.BlockTags.SAPLINGS) ||
-                block == Blocks.TALL_GRASS ||
-                block == Blocks.GRASS ||
-                block == Blocks.FERN ||
-                block == Blocks.LARGE_FERN ||
-                block == Blocks.DEAD_BUSH) {
-                surfacePos = surfacePos.down();
-                continue;
-            }
-            
-            // Skip non-full blocks (slabs, stairs, etc.)
-            if (!state.isFullCube(world, surfacePos)) {
-                surfacePos = surfacePos.down();
-                continue;
+    /**
+     * Export debug data without blocking the server thread
+     * Must be called on the server thread: chunks of the area that are not loaded are loaded through
+     * a ChunkLoader, copied and released again, then scanned and written on a worker thread.
+     * Chunks never saved to disk, or saved only partly generated, read as holes.
+     * @return Path to exported file, null if the job was cancelled
+     */
+    public CompletableFuture<String> debugExportAsync(BlockPos center, int radius, LayerJob job) {
+        ChunkPos minChunk = new ChunkPos(new BlockPos(center.getX() - radius, 0, center.getZ() - radius));
+        ChunkPos maxChunk = new ChunkPos(new BlockPos(center.getX() + radius, 0, center.getZ() + radius));
+        List<ChunkPos> chunks = existingChunks(minChunk.x, minChunk.z, maxChunk.x, maxChunk.z);
+        job.setChunkCount(chunks.size());
+        job.setPhase(LayerJob.Phase.LOADING);
+        
+        LayerSettings settings = LayerSettings.current();
+        ChunkLoader loader = new ChunkLoader(world);
+        return loader.load(chunks).thenCompose(loaded -> {
+            job.setChunkCount(loaded.size());
+            job.setPhase(LayerJob.Phase.SNAPSHOT);
+            WorldSnapshot snapshot;
+            try {
+                snapshot = WorldSnapshot.copy(world, loaded, blockFlags);
+            } finally {
+                loader.close();
             }
-            
-            // Found solid surface block
-            return surfacePos;
-        }
-        
-        return null;
+            return CompletableFuture.supplyAsync(() -> debugExport(snapshot, center, radius, settings, job),
+                Util.getMainWorkerExecutor());
+        });
     }
     
-    private boolean canGenerateLayersOn(Block block) {
-        // Check if the block has a mapping in the config file
-        return mappingRegistry.hasMapping(block);
-    }
-    
-    private boolean hasWaterNearby(BlockPos surfacePos) {
-        BlockPos layerPos = surfacePos.up();
-        BlockState stateAbove = world.getBlockState(layerPos);
-        
-        if (stateAbove.getBlock() == Blocks.WATER) return true;
-        
-        BlockState surfaceState = world.getBlockState(surfacePos);
-        if (surfaceState.getBlock() == Blocks.WATER) return true;
-        
-        if (surfaceState.contains(Properties.WATERLOGGED) && surfaceState.get(Properties.WATERLOGGED)) {
-            return true;
-        }
-        
-        BlockPos[] adjacentPositions = {
-            surfacePos.north(),
-            surfacePos.south(),
-            surfacePos.east(),
-            surfacePos.west()
-        };
-        
-        for (BlockPos adjacent : adjacentPositions) {
-            BlockState adjacentState = world.getBlockState(adjacent);
-            
-            if (adjacentState.getBlock() == Blocks.WATER) return true;
-            
-            if (adjacentState.contains(Properties.WATERLOGGED) && adjacentState.get(Properties.WATERLOGGED)) {
-                return true;
-            }
-            
-            BlockState adjacentAbove = world.getBlockState(adjacent.up());
-            if (adjacentAbove.getBlock() == Blocks.WATER) return true;
-        }
-        
-        return false;
-    }
-
-    /**
-     * Export debug data showing Y levels and layer values in a grid
-     * @param center Center position
-     * @param radius Radius in blocks (not chunks)
-     * @return Path to exported file
-     */
-    public String debugExport(BlockPos center, int radius) {
+    private String debugExport(WorldSnapshot snapshot, BlockPos center, int radius, LayerSettings settings,
+                               LayerJob job) {
         StringBuilder logOutput = new StringBuilder();
         StringBuilder fileOutput = new StringBuilder();
         
@@ -1104,67 +1221,47 @@ public class LayerGenerator {
         int minZ = center.getZ() - radius;
         int maxZ = center.getZ() + radius;
         
-        // Collect ALL surface heights (unfiltered)
-        Map<BlockPos, Integer> allSurfaceHeights = new HashMap<>();
-        
-        for (int x = minX; x <= maxX; x++) {
-            for (int z = minZ; z <= maxZ; z++) {
-                BlockPos columnPos = new BlockPos(x, 0, z);
-                BlockPos surfacePos = findSurfaceBlock(columnPos);
-                
-                if (surfacePos != null) {
-                    allSurfaceHeights.put(surfacePos, surfacePos.getY());
-                }
-            }
-        }
-        
-        // Collect VALID surface heights (filtered)
-        Map<BlockPos, Integer> validSurfaceHeights = new HashMap<>();
-        Map<BlockPos, Block> surfaceBlocks = new HashMap<>();
+        HeightField field = HeightField.forArea(minX, minZ, maxX, maxZ);
         
+        // Scan ALL surface columns once (unfiltered heights + placement filters)
+        job.setPhase(LayerJob.Phase.SCANNING);
+        SurfaceFinder surfaceFinder = new SurfaceFinder(snapshot, blockFlags);
+        BlockPos.Mutable columnPos = new BlockPos.Mutable();
         for (int x = minX; x <= maxX; x++) {
             for (int z = minZ; z <= maxZ; z++) {
-                BlockPos columnPos = new BlockPos(x, 0, z);
-                BlockPos surfacePos = findSurfaceBlock(columnPos);
-                
-                if (surfacePos != null) {
-                    BlockState surfaceState = world.getBlockState(surfacePos);
-                    Block surfaceBlock = surfaceState.getBlock();
-                    
-                    if (canGenerateLayersOn(surfaceBlock) && !hasWaterNearby(surfacePos)) {
-                        validSurfaceHeights.put(surfacePos, surfacePos.getY());
-                        surfaceBlocks.put(surfacePos, surfaceBlock);
-                    }
-                }
+                columnPos.set(x, 0, z);
+                scanColumn(columnPos, field, surfaceFinder, snapshot, null);
             }
         }
+        markWaterColumns(field, snapshot);
+        job.addChunksScanned(job.getChunkCount());
         
         // Collect ACTUAL layers currently in world
-        Map<BlockPos, Integer> actualLayers = new HashMap<>();
-        for (Map.Entry<BlockPos, Integer> entry : validSurfaceHeights.entrySet()) {
-            BlockPos surfacePos = entry.getKey();
-            BlockPos layerPos = surfacePos.up();
-            BlockState layerState = world.getBlockState(layerPos);
+        int[] actualLayers = new int[field.size()];
+        BlockPos.Mutable layerPos = new BlockPos.Mutable();
+        for (int index = 0; index < field.size(); index++) {
+            if (!field.isValid(index)) continue;
             
-            if (isLayerBlock(layerState.getBlock())) {
+            layerPos.set(field.getX(index), field.getHeight(index) + 1, field.getZ(index));
+            BlockState layerState = snapshot.getBlockState(layerPos);
+            
+            if (blockFlags.isLayerBlock(layerState)) {
                 if (layerState.contains(Properties.LAYERS)) {
-                    actualLayers.put(surfacePos, layerState.get(Properties.LAYERS));
+                    actualLayers[index] = layerState.get(Properties.LAYERS);
                 } else {
-                    actualLayers.put(surfacePos, 1);
+                    actualLayers[index] = 1;
                 }
             }
         }
         
-        // Get all unique Y levels and sort
-        Set<Integer> allYLevels = new HashSet<>(allSurfaceHeights.values());
-        List<Integer> sortedYLevels = new ArrayList<>(allYLevels);
-        Collections.sort(sortedYLevels, Collections.reverseOrder());
+        // Bucket columns by Y level, highest to lowest
+        HeightLevels levels = HeightLevels.of(field);
         
         // Build header
         String header = String.format("Debug Export - Center: %s, Radius: %d blocks\n", center, radius);
         header += String.format("Area: X=%d to %d, Z=%d to %d\n", minX, maxX, minZ, maxZ);
-        header += String.format("Mode: %s, Max Distance: %d\n", LayerConfig.MODE, LayerConfig.MAX_LAYER_DISTANCE);
-        header += String.format("Smoothing Cycles: %d, Rounding: %s\n\n", LayerConfig.SMOOTHING_CYCLES, LayerConfig.SMOOTHING_ROUNDING_MODE);
+        header += String.format("Mode: %s, Max Distance: %d\n", settings.getMode(), settings.getMaxLayerDistance());
+        header += String.format("Smoothing Cycles: %d, Rounding: %s\n\n", settings.getSmoothingCycles(), settings.getRoundingMode());
         
         logOutput.append(header);
         fileOutput.append(header);
@@ -1172,12 +1269,8 @@ public class LayerGenerator {
         // Show Y levels
         logOutput.append("=== Y LEVELS FOUND ===\n");
         fileOutput.append("=== Y LEVELS FOUND ===\n");
-        for (int y : sortedYLevels) {
-            int count = 0;
-            for (int height : allSurfaceHeights.values()) {
-                if (height == y) count++;
-            }
-            String line = String.format("Y=%d: %d blocks\n", y, count);
+        for (int level = 0; level < levels.getLevelCount(); level++) {
+            String line = String.format("Y=%d: %d blocks\n", levels.getLevel(level), levels.getColumnCount(level));
             logOutput.append(line);
             fileOutput.append(line);
         }
@@ -1185,69 +1278,44 @@ public class LayerGenerator {
         fileOutput.append("\n");
         
         // Calculate what layers WOULD be placed with current algorithm
-        Set<ChunkPos> targetChunks = new HashSet<>();
-        targetChunks.add(new ChunkPos(center));
-        
-        Map<BlockPos, Integer> edges = identifyEdges(allSurfaceHeights);
-        
-        Map<BlockPos, Integer> calculatedLayers = calculateLayerValues(
-            validSurfaceHeights,
-            allSurfaceHeights,
-            edges,
-            targetChunks
-        );
-        
-        // Create XZ lookup for heightmap
-        Map<String, Integer> xzToHeight = new HashMap<>();
-        for (Map.Entry<BlockPos, Integer> entry : allSurfaceHeights.entrySet()) {
-            String key = entry.getKey().getX() + "," + entry.getKey().getZ();
-            xzToHeight.put(key, entry.getValue());
-        }
+        if (job.isCancelled()) return null;
+        job.setPhase(LayerJob.Phase.CALCULATING);
+        field.markTarget(new ChunkPos(center));
+        
+        BitSet eColumns = new BitSet(field.size());
+        BitSet lColumns = new BitSet(field.size());
+        classifyColumns(field, eColumns, lColumns, settings);
+        
+        int[] calculatedLayers = calculateLayerValues(field, levels, eColumns, lColumns, settings);
+        job.addChunksComputed(job.getChunkCount());
         
         // Track E blocks from previous Y level (for H block inheritance)
-        Set<BlockPos> previousEBlocks = new HashSet<>();
+        BitSet previousEBlocks = new BitSet(field.size());
         
         // Build output for each Y level
-        for (int currentY : sortedYLevels) {
+        for (int level = 0; level < levels.getLevelCount(); level++) {
+            int currentY = levels.getLevel(level);
             logOutput.append(String.format("=== Y LEVEL %d ===\n\n", currentY));
             fileOutput.append(String.format("=== Y LEVEL %d ===\n\n", currentY));
             
-            // Classify blocks at this Y level using same logic as generation
-            Set<BlockPos> hBlocks = new HashSet<>();
-            Set<BlockPos> eBlocks = new HashSet<>();
-            Set<BlockPos> lBlocks = new HashSet<>();
-            
-            classifyBlocksAtYLevel(currentY, allSurfaceHeights, xzToHeight, validSurfaceHeights, 
-                targetChunks, previousEBlocks, hBlocks, eBlocks, lBlocks);
-            
-            // Create position lookup for this Y level
-            Map<String, BlockPos> xzLookup = new HashMap<>();
-            for (Map.Entry<BlockPos, Integer> entry : allSurfaceHeights.entrySet()) {
-                if (entry.getValue() == currentY) {
-                    String key = entry.getKey().getX() + "," + entry.getKey().getZ();
-                    xzLookup.put(key, entry.getKey());
-                }
-            }
-            
-            if (xzLookup.isEmpty()) {
-                previousEBlocks = eBlocks;
-                continue;
-            }
+            // Blocks at this Y level, classified with the same logic as generation
+            BitSet hBlocks = previousEBlocks;
+            BitSet eBlocks = new BitSet(field.size());
+            selectLevel(levels, level, eColumns, eBlocks);
             
             // Actual layers at this Y
             String actualMatrix = buildMatrix(
                 String.format("ACTUAL LAYERS (Y=%d) - H=Higher Edge, E=Lower Edge, 0-7=Layers", currentY), 
                 minX, maxX, minZ, maxZ,
                 (x, z) -> {
-                    String key = x + "," + z;
-                    BlockPos pos = xzLookup.get(key);
-                    if (pos == null) return " --";
+                    int index = field.index(x, z);
+                    if (field.getHeight(index) != currentY) return " --";
                     
-                    if (hBlocks.contains(pos)) return " H ";
-                    if (eBlocks.contains(pos)) return " E ";
+                    if (hBlocks.get(index)) return " H ";
+                    if (eBlocks.get(index)) return " E ";
                     
-                    Integer layers = actualLayers.get(pos);
-                    if (layers == null) return " 0 ";
+                    int layers = actualLayers[index];
+                    if (layers == 0) return " 0 ";
                     return String.format(" %d ", layers);
                 });
             
@@ -1259,15 +1327,14 @@ public class LayerGenerator {
                 String.format("CALCULATED LAYERS (Y=%d) - H=Higher Edge, E=Lower Edge, 0-7=Layers", currentY), 
                 minX, maxX, minZ, maxZ,
                 (x, z) -> {
-                    String key = x + "," + z;
-                    BlockPos pos = xzLookup.get(key);
-                    if (pos == null) return " --";
+                    int index = field.index(x, z);
+                    if (field.getHeight(index) != currentY) return " --";
                     
-                    if (hBlocks.contains(pos)) return " H ";
-                    if (eBlocks.contains(pos)) return " E ";
+                    if (hBlocks.get(index)) return " H ";
+                    if (eBlocks.get(index)) return " E ";
                     
-                    Integer layers = calculatedLayers.get(pos);
-                    if (layers == null) return " 0 ";
+                    int layers = calculatedLayers[index];
+                    if (layers == 0) return " 0 ";
                     return String.format(" %d ", layers);
                 });
             
@@ -1282,11 +1349,13 @@ public class LayerGenerator {
         CRLayers.LOGGER.info("\n" + logOutput.toString());
         
         // Write to file
+        job.setPhase(LayerJob.Phase.WRITING);
         try {
             Path worldDir = world.getServer().getSavePath(WorldSavePath.ROOT);
             Path debugFile = worldDir.resolve("crlayers_debug.txt");
             
             java.nio.file.Files.writeString(debugFile, fileOutput.toString());
+            job.addChunksApplied(job.getChunkCount());
             
             return debugFile.toString();
         } catch (Exception e) {
@@ -9,6 +9,9 @@ import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.border.WorldBorder;
+
+import java.util.List;
 
 public class LayerGeneratorCommand {
     
@@ -21,6 +24,18 @@ public class LayerGeneratorCommand {
             .executes(LayerGeneratorCommand::executeDefault)
         );
         
+        // Area generation command, by block coordinates or the world border (always handles plants)
+        dispatcher.register(CommandManager.literal("generateLayersArea")
+            .requires(source -> source.hasPermissionLevel(2))
+            .then(CommandManager.literal("border")
+                .executes(LayerGeneratorCommand::executeAreaBorder))
+            .then(CommandManager.argument("x1", IntegerArgumentType.integer())
+                .then(CommandManager.argument("z1", IntegerArgumentType.integer())
+                    .then(CommandManager.argument("x2", IntegerArgumentType.integer())
+                        .then(CommandManager.argument("z2", IntegerArgumentType.integer())
+                            .executes(LayerGeneratorCommand::executeArea)))))
+        );
+        
         // Remove layers command (always restores plants)
         dispatcher.register(CommandManager.literal("removeLayers")
             .requires(source -> source.hasPermissionLevel(2))
@@ -42,6 +57,7 @@ public class LayerGeneratorCommand {
                         builder.suggest("basic");
                         builder.suggest("extended");
                         builder.suggest("extreme");
+                        builder.suggest("distance");
                         return builder.buildFuture();
                     })
                     .executes(LayerGeneratorCommand::setMode)))
@@ -98,6 +114,24 @@ public class LayerGeneratorCommand {
                 .executes(LayerGeneratorCommand::executeDebug))
             .executes(context -> executeDebug(context, 3))
         );
+        
+        // Job commands
+        dispatcher.register(CommandManager.literal("layerJobs")
+            .requires(source -> source.hasPermissionLevel(2))
+            
+            .then(CommandManager.literal("list")
+                .executes(LayerGeneratorCommand::listJobs))
+            
+            .then(CommandManager.literal("status")
+                .then(CommandManager.argument("id", IntegerArgumentType.integer(1))
+                    .executes(LayerGeneratorCommand::showJob)))
+            
+            .then(CommandManager.literal("cancel")
+                .then(CommandManager.argument("id", IntegerArgumentType.integer(1))
+                    .executes(LayerGeneratorCommand::cancelJob)))
+            
+            .executes(LayerGeneratorCommand::listJobs)
+        );
     }
     
     // ==================== Generation Commands ====================
@@ -128,36 +162,103 @@ public class LayerGeneratorCommand {
         source.sendFeedback(() -> Text.literal("§7" + configInfo), false);
         
         int blockRadius = chunkRadius * 16;
-        String message = String.format("§eGenerating layers in %d chunk radius (~%d blocks) with plant handling...", chunkRadius, blockRadius);
+        LayerJob job = LayerJobRegistry.start(LayerJob.Type.GENERATE,
+            String.format("%d chunk radius around %s", chunkRadius, playerPos.toShortString()));
+        String message = String.format("§eJob #%d: generating layers in %d chunk radius (~%d blocks) with plant handling...", 
+            job.getId(), chunkRadius, blockRadius);
         source.sendFeedback(() -> Text.literal(message), false);
         
         LayerGenerator generator = new LayerGenerator(player.getServerWorld());
         
         try {
-            long startTime = System.currentTimeMillis();
-            int blocksGenerated = generator.generateLayers(playerPos, chunkRadius, replacePlants);
-            long duration = System.currentTimeMillis() - startTime;
-            
-            if (blocksGenerated == 0) {
-                source.sendFeedback(() -> Text.literal("§eNo layers generated. Possible reasons:"), false);
-                source.sendFeedback(() -> Text.literal("§7- Terrain is completely flat (no height changes)"), false);
-                source.sendFeedback(() -> Text.literal("§7- Standing on invalid blocks"), false);
-                source.sendFeedback(() -> Text.literal("§7- Near water"), false);
-                return 1;
-            }
-            
-            source.sendFeedback(() -> Text.literal(
-                String.format("§aGenerated %d layer blocks! §7(took %dms)", blocksGenerated, duration)), 
-                true);
+            // Snapshot now, calculate on a worker thread, place back on the server thread
+            job.attach(generator.generateLayersAsync(playerPos, chunkRadius, replacePlants, job)).whenComplete((blocksGenerated, error) -> {
+                long duration = job.getElapsedMillis();
+                
+                if (job.getState() == LayerJob.State.CANCELLED) {
+                    source.sendFeedback(() -> Text.literal(String.format(
+                        "§eJob #%d cancelled after placing %d layer blocks", job.getId(), job.getBlocks())), true);
+                    return;
+                }
+                
+                if (error != null) {
+                    CRLayers.LOGGER.error("Error generating layers", job.getError());
+                    source.sendError(Text.literal("§cError: " + job.getError().getMessage()));
+                    return;
+                }
+                
+                if (blocksGenerated == 0) {
+                    source.sendFeedback(() -> Text.literal("§eNo layers generated. Possible reasons:"), false);
+                    source.sendFeedback(() -> Text.literal("§7- Terrain is completely flat (no height changes)"), false);
+                    source.sendFeedback(() -> Text.literal("§7- Standing on invalid blocks"), false);
+                    source.sendFeedback(() -> Text.literal("§7- Near water"), false);
+                    return;
+                }
+                
+                source.sendFeedback(() -> Text.literal(
+                    String.format("§aGenerated %d layer blocks! §7(took %dms)", blocksGenerated, duration)), 
+                    true);
+            });
             return 1;
             
         } catch (Exception e) {
+            job.cancel();
             CRLayers.LOGGER.error("Error generating layers", e);
             source.sendError(Text.literal("§cError: " + e.getMessage()));
             return 0;
         }
     }
     
+    // ==================== Area Commands ====================
+    
+    private static int executeArea(CommandContext<ServerCommandSource> context) {
+        return executeArea(context,
+            IntegerArgumentType.getInteger(context, "x1"), IntegerArgumentType.getInteger(context, "z1"),
+            IntegerArgumentType.getInteger(context, "x2"), IntegerArgumentType.getInteger(context, "z2"));
+    }
+    
+    private static int executeAreaBorder(CommandContext<ServerCommandSource> context) {
+        WorldBorder border = context.getSource().getWorld().getWorldBorder();
+        return executeArea(context,
+            clampToInt(Math.floor(border.getBoundWest())), clampToInt(Math.floor(border.getBoundNorth())),
+            clampToInt(Math.ceil(border.getBoundEast()) - 1), clampToInt(Math.ceil(border.getBoundSouth()) - 1));
+    }
+    
+    private static int executeArea(CommandContext<ServerCommandSource> context, int x1, int z1, int x2, int z2) {
+        ServerCommandSource source = context.getSource();
+        
+        AreaJob areaJob;
+        try {
+            areaJob = AreaJob.start(source.getWorld(), x1, z1, x2, z2, true);
+        } catch (IllegalStateException e) {
+            source.sendError(Text.literal("§c" + e.getMessage()));
+            return 0;
+        }
+        
+        LayerJob job = areaJob.getJob();
+        source.sendFeedback(() -> Text.literal(String.format(
+            "§eJob #%d: generating layers from %d,%d to %d,%d, follow it with /layerJobs status %d",
+            job.getId(), Math.min(x1, x2), Math.min(z1, z2), Math.max(x1, x2), Math.max(z1, z2), job.getId())), true);
+        
+        areaJob.getResult().whenComplete((blocksGenerated, error) -> {
+            if (job.getState() == LayerJob.State.CANCELLED) {
+                source.sendFeedback(() -> Text.literal(String.format(
+                    "§eJob #%d cancelled after placing %d layer blocks", job.getId(), job.getBlocks())), true);
+            } else if (error != null) {
+                source.sendError(Text.literal("§cError: " + job.getError().getMessage()));
+            } else {
+                source.sendFeedback(() -> Text.literal(String.format(
+                    "§aJob #%d generated %d layer blocks! §7(took %ds)", job.getId(), blocksGenerated,
+                    job.getElapsedMillis() / 1000)), true);
+            }
+        });
+        return 1;
+    }
+    
+    private static int clampToInt(double value) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+    }
+    
     // ==================== Removal Commands ====================
     
     private static int executeRemoveDefault(CommandContext<ServerCommandSource> context) {
@@ -180,22 +281,39 @@ public class LayerGeneratorCommand {
         BlockPos playerPos = player.getBlockPos();
         
         int blockRadius = chunkRadius * 16;
-        String message = String.format("§eRemoving layers in %d chunk radius (~%d blocks) and restoring plants...", chunkRadius, blockRadius);
+        LayerJob job = LayerJobRegistry.start(LayerJob.Type.REMOVE,
+            String.format("%d chunk radius around %s", chunkRadius, playerPos.toShortString()));
+        String message = String.format("§eJob #%d: removing layers in %d chunk radius (~%d blocks) and restoring plants...", 
+            job.getId(), chunkRadius, blockRadius);
         source.sendFeedback(() -> Text.literal(message), false);
         
         LayerGenerator generator = new LayerGenerator(player.getServerWorld());
         
         try {
-            long startTime = System.currentTimeMillis();
-            int blocksRemoved = generator.removeLayers(playerPos, chunkRadius, restorePlants);
-            long duration = System.currentTimeMillis() - startTime;
-            
-            source.sendFeedback(() -> Text.literal(
-                String.format("§aRemoved %d layer blocks! §7(took %dms)", blocksRemoved, duration)), 
-                true);
+            // Removal is spread over ticks by the placement queue
+            job.attach(generator.removeLayersQueued(playerPos, chunkRadius, restorePlants, job)).whenComplete((blocksRemoved, error) -> {
+                long duration = job.getElapsedMillis();
+                
+                if (job.getState() == LayerJob.State.CANCELLED) {
+                    source.sendFeedback(() -> Text.literal(String.format(
+                        "§eJob #%d cancelled after removing %d layer blocks", job.getId(), job.getBlocks())), true);
+                    return;
+                }
+                
+                if (error != null) {
+                    CRLayers.LOGGER.error("Error removing layers", job.getError());
+                    source.sendError(Text.literal("§cError: " + job.getError().getMessage()));
+                    return;
+                }
+                
+                source.sendFeedback(() -> Text.literal(
+                    String.format("§aRemoved %d layer blocks! §7(took %dms)", blocksRemoved, duration)), 
+                    true);
+            });
             return 1;
             
         } catch (Exception e) {
+            job.cancel();
             CRLayers.LOGGER.error("Error removing layers", e);
             source.sendError(Text.literal("§cError: " + e.getMessage()));
             return 0;
@@ -225,6 +343,7 @@ public class LayerGeneratorCommand {
             case BASIC -> "§7Linear gradient up to 7: 7→6→5→4→3→2→1";
             case EXTENDED -> "§7Gradual steps up to 14: 7,7→6,6→5,5→4,4→3,3→2,2→1,1";
             case EXTREME -> "§7Very gradual steps up to 21: 7,7,7→6,6,6→5,5,5→4,4,4→3,3,3→2,2,2→1,1,1";
+            case DISTANCE -> "§7Gradient 7→1 over the distance to the nearest edge in any direction";
         };
         source.sendFeedback(() -> Text.literal(modeDesc), false);
         
@@ -239,8 +358,9 @@ public class LayerGeneratorCommand {
             case "basic" -> LayerConfig.GenerationMode.BASIC;
             case "extended" -> LayerConfig.GenerationMode.EXTENDED;
             case "extreme" -> LayerConfig.GenerationMode.EXTREME;
+            case "distance" -> LayerConfig.GenerationMode.DISTANCE;
             default -> {
-                source.sendError(Text.literal("§cUnknown mode. Use: basic, extended, or extreme"));
+                source.sendError(Text.literal("§cUnknown mode. Use: basic, extended, extreme, or distance"));
                 yield null;
             }
         };
@@ -424,15 +544,109 @@ public class LayerGeneratorCommand {
         }
         
         BlockPos center = player.getBlockPos();
+        LayerJob job = LayerJobRegistry.start(LayerJob.Type.DEBUG,
+            String.format("%dx%d area around %s", radius*2+1, radius*2+1, center.toShortString()));
         source.sendFeedback(() -> Text.literal(
-            String.format("§eGenerating debug data for %dx%d area around %s...", 
-                radius*2+1, radius*2+1, center)), false);
+            String.format("§eJob #%d: generating debug data for %dx%d area around %s...", 
+                job.getId(), radius*2+1, radius*2+1, center)), false);
         
         LayerGenerator generator = new LayerGenerator(player.getServerWorld());
-        String result = generator.debugExport(center, radius);
+        job.attach(generator.debugExportAsync(center, radius, job)).whenComplete((result, error) -> {
+            // Runs on the worker thread; feedback is sent on the server thread
+            source.getServer().execute(() -> {
+                if (job.getState() == LayerJob.State.CANCELLED) {
+                    source.sendFeedback(() -> Text.literal(String.format("§eJob #%d cancelled", job.getId())), true);
+                } else if (error != null) {
+                    CRLayers.LOGGER.error("Error exporting debug data", job.getError());
+                    source.sendError(Text.literal("§cError: " + job.getError().getMessage()));
+                } else {
+                    source.sendFeedback(() -> Text.literal("§aDebug data exported to: §f" + result), true);
+                }
+            });
+        });
         
-        source.sendFeedback(() -> Text.literal("§aDebug data exported to: §f" + result), true);
+        return 1;
+    }
+    
+    // ==================== Job Commands ====================
+    
+    private static int listJobs(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        List<LayerJob> jobs = LayerJobRegistry.list();
+        
+        if (jobs.isEmpty()) {
+            source.sendFeedback(() -> Text.literal("§7No layer jobs"), false);
+            return 1;
+        }
+        
+        source.sendFeedback(() -> Text.literal("§6=== Layer Jobs ==="), false);
+        for (LayerJob job : jobs) {
+            source.sendFeedback(() -> Text.literal(String.format(
+                "§e#%d §f%s %s §7- %s, %.0f%%, %d blocks",
+                job.getId(), job.getType().name(), job.getDescription(),
+                describeState(job), job.getProgress() * 100, job.getBlocks())), false);
+        }
+        return 1;
+    }
+    
+    private static int showJob(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        int id = IntegerArgumentType.getInteger(context, "id");
+        LayerJob job = LayerJobRegistry.get(id);
+        
+        if (job == null) {
+            source.sendError(Text.literal("§cUnknown job #" + id));
+            return 0;
+        }
+        
+        source.sendFeedback(() -> Text.literal(String.format(
+            "§6=== Job #%d: %s %s ===", job.getId(), job.getType().name(), job.getDescription())), false);
+        source.sendFeedback(() -> Text.literal(String.format(
+            "§eState: §f%s (%.1f%%)", describeState(job), job.getProgress() * 100)), false);
+        source.sendFeedback(() -> Text.literal(String.format(
+            "§eChunks: §f%d scanned, %d computed, %d applied of %d",
+            job.getChunksScanned(), job.getChunksComputed(), job.getChunksApplied(), job.getChunkCount())), false);
+        source.sendFeedback(() -> Text.literal(String.format(
+            "§eBlocks: §f%d (%.0f blocks/s)", job.getBlocks(), job.getBlocksPerSecond())), false);
+        
+        long eta = job.getEtaSeconds();
+        source.sendFeedback(() -> Text.literal(String.format(
+            "§eElapsed: §f%ds§e, ETA: §f%s", job.getElapsedMillis() / 1000,
+            job.getState() != LayerJob.State.RUNNING ? "-" : eta < 0 ? "unknown" : eta + "s")), false);
         
+        if (job.getError() != null) {
+            source.sendFeedback(() -> Text.literal("§cError: " + job.getError().getMessage()), false);
+        }
         return 1;
     }
+    
+    private static int cancelJob(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        int id = IntegerArgumentType.getInteger(context, "id");
+        LayerJob job = LayerJobRegistry.get(id);
+        
+        if (job == null) {
+            source.sendError(Text.literal("§cUnknown job #" + id));
+            return 0;
+        }
+        
+        if (!job.cancel()) {
+            source.sendError(Text.literal(String.format("§cJob #%d already finished (%s)", id, describeState(job))));
+            return 0;
+        }
+        
+        source.sendFeedback(() -> Text.literal(String.format(
+            "§eCancelling job #%d, it stops after the current chunk", id)), true);
+        return 1;
+    }
+    
+    private static String describeState(LayerJob job) {
+        if (job.getState() != LayerJob.State.RUNNING) {
+            return job.getState().name().toLowerCase();
+        }
+        if (job.isCancelled()) {
+            return "cancelling";
+        }
+        return job.getPhase().name().toLowerCase();
+    }
 }
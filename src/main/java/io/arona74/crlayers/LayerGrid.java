@@ -0,0 +1,42 @@
+package io.arona74.crlayers;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Layer count per column of a HeightField, with a lock-free max update
+ * Gradients are merged by taking the max of existing and new value, which does not depend on
+ * order, so spreading can write from several threads and still give the serial result.
+ */
+public class LayerGrid {
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final int[] values;
+
+    public LayerGrid(int size) {
+        this.values = new int[size];
+    }
+
+    /**
+     * Atomically raise a column's value to at least the given value
+     */
+    public void max(int index, int value) {
+        int current = (int) VALUES.getVolatile(values, index);
+        while (value > current) {
+            int witness = (int) VALUES.compareAndExchange(values, index, current, value);
+            if (witness == current) return;
+            current = witness;
+        }
+    }
+
+    public int get(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return Backing array (shared); plain reads and writes are only safe once concurrent spreading is done
+     */
+    public int[] getValues() {
+        return values;
+    }
+}
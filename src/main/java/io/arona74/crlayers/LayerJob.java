@@ -0,0 +1,209 @@
+package io.arona74.crlayers;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress and cancellation of one layer command run
+ * Counters are added to by every stage (scanning and calculation on worker threads, placement
+ * on the server thread) and can be read from any thread. Cancellation is checked
+ * between chunks, so a cancelled job stops with every chunk either fully processed or untouched.
+ */
+public class LayerJob {
+    public enum Type {
+        GENERATE,
+        REMOVE,
+        DEBUG,
+        AREA
+    }
+
+    public enum State {
+        RUNNING,
+        DONE,
+        CANCELLED,
+        FAILED
+    }
+
+    public enum Phase {
+        INDEXING,
+        LOADING,
+        SNAPSHOT,
+        SCANNING,
+        CALCULATING,
+        PLACING,
+        REMOVING,
+        WRITING
+    }
+
+    private final int id;
+    private final Type type;
+    private final String description;
+    private final long startTime = System.currentTimeMillis();
+
+    private volatile State state = State.RUNNING;
+    private volatile Phase phase = Phase.SNAPSHOT;
+    private volatile boolean cancelled;
+    private volatile long endTime;
+    private volatile Throwable error;
+
+    private volatile int chunkCount;
+    private final AtomicInteger chunksScanned = new AtomicInteger();
+    private final AtomicInteger chunksComputed = new AtomicInteger();
+    private final AtomicInteger chunksApplied = new AtomicInteger();
+    private final AtomicInteger blocks = new AtomicInteger();
+
+    LayerJob(int id, Type type, String description) {
+        this.id = id;
+        this.type = type;
+        this.description = description;
+    }
+
+    /**
+     * Record the outcome of the job when its result completes
+     * @return Stage completing after the job state is updated
+     */
+    public <T> CompletableFuture<T> attach(CompletableFuture<T> result) {
+        return result.whenComplete((value, throwable) -> {
+            endTime = System.currentTimeMillis();
+            if (cancelled) {
+                state = State.CANCELLED;
+            } else if (throwable != null) {
+                error = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause() : throwable;
+                state = State.FAILED;
+            } else {
+                state = State.DONE;
+            }
+        });
+    }
+
+    /**
+     * Ask the job to stop at the next chunk boundary
+     * @return false if the job had already finished
+     */
+    public boolean cancel() {
+        if (state != State.RUNNING) return false;
+        cancelled = true;
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // ==================== Progress ====================
+
+    public void setPhase(Phase phase) {
+        this.phase = phase;
+    }
+
+    /**
+     * @param chunkCount Chunks the job scans, calculates and applies
+     */
+    public void setChunkCount(int chunkCount) {
+        this.chunkCount = chunkCount;
+    }
+
+    public void addChunksScanned(int count) {
+        chunksScanned.addAndGet(count);
+    }
+
+    public void addChunksComputed(int count) {
+        chunksComputed.addAndGet(count);
+    }
+
+    public void addChunksApplied(int count) {
+        chunksApplied.addAndGet(count);
+    }
+
+    /**
+     * @param count Blocks placed (or removed)
+     */
+    public void addBlocks(int count) {
+        blocks.addAndGet(count);
+    }
+
+    /**
+     * @return Fraction of the job done, from 0 to 1
+     * Removal jobs only apply; the other jobs weigh scanning, calculation and placement equally.
+     */
+    public double getProgress() {
+        if (state == State.DONE) return 1.0;
+        if (chunkCount == 0) return 0.0;
+        if (type == Type.REMOVE) {
+            return Math.min(1.0, (double) chunksApplied.get() / chunkCount);
+        }
+        int done = chunksScanned.get() + chunksComputed.get() + chunksApplied.get();
+        return Math.min(1.0, done / (3.0 * chunkCount));
+    }
+
+    /**
+     * @return Estimated seconds left from the progress so far, -1 if unknown
+     */
+    public long getEtaSeconds() {
+        if (state != State.RUNNING) return 0;
+        double progress = getProgress();
+        if (progress <= 0) return -1;
+        return Math.round(getElapsedMillis() * (1 - progress) / progress / 1000.0);
+    }
+
+    public double getBlocksPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed == 0 ? 0 : blocks.get() * 1000.0 / elapsed;
+    }
+
+    public long getElapsedMillis() {
+        long end = state == State.RUNNING ? System.currentTimeMillis() : endTime;
+        return end - startTime;
+    }
+
+    // ==================== Getters ====================
+
+    public int getId() {
+        return id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return Failure cause, null unless FAILED
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public int getChunksScanned() {
+        return chunksScanned.get();
+    }
+
+    public int getChunksComputed() {
+        return chunksComputed.get();
+    }
+
+    public int getChunksApplied() {
+        return chunksApplied.get();
+    }
+
+    public int getBlocks() {
+        return blocks.get();
+    }
+}
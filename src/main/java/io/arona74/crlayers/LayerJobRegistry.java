@@ -0,0 +1,57 @@
+package io.arona74.crlayers;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Running and recently finished layer jobs, by id
+ * Only the last MAX_FINISHED_JOBS finished jobs are kept.
+ */
+public class LayerJobRegistry {
+    private static final int MAX_FINISHED_JOBS = 20;
+
+    private static final Map<Integer, LayerJob> JOBS = new LinkedHashMap<>();
+    private static int nextId = 1;
+
+    /**
+     * Register a new running job
+     */
+    public static synchronized LayerJob start(LayerJob.Type type, String description) {
+        prune();
+        LayerJob job = new LayerJob(nextId++, type, description);
+        JOBS.put(job.getId(), job);
+        return job;
+    }
+
+    /**
+     * @return Job, or null if unknown or pruned
+     */
+    public static synchronized LayerJob get(int id) {
+        return JOBS.get(id);
+    }
+
+    /**
+     * @return All kept jobs, oldest first
+     */
+    public static synchronized List<LayerJob> list() {
+        return new ArrayList<>(JOBS.values());
+    }
+
+    private static void prune() {
+        int finished = 0;
+        for (LayerJob job : JOBS.values()) {
+            if (job.getState() != LayerJob.State.RUNNING) finished++;
+        }
+
+        Iterator<LayerJob> iterator = JOBS.values().iterator();
+        while (finished > MAX_FINISHED_JOBS && iterator.hasNext()) {
+            if (iterator.next().getState() != LayerJob.State.RUNNING) {
+                iterator.remove();
+                finished--;
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package io.arona74.crlayers;
+
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a layer calculation, waiting to be placed on the server thread
+ * Holds the scanned field (surface positions and blocks), the layer count of each column
+ * and the target chunks, in the order they are placed.
+ */
+public class LayerPlan {
+    private static final LayerPlan EMPTY = new LayerPlan(null, new int[0], Collections.emptyList());
+
+    private final HeightField field;
+    private final int[] layerValues;
+    private final List<ChunkPos> chunks;
+
+    public LayerPlan(HeightField field, int[] layerValues, List<ChunkPos> chunks) {
+        this.field = field;
+        this.layerValues = layerValues;
+        this.chunks = chunks;
+    }
+
+    /**
+     * @return Plan that places nothing
+     */
+    public static LayerPlan empty() {
+        return EMPTY;
+    }
+
+    public boolean isEmpty() {
+        return field == null;
+    }
+
+    public HeightField getField() {
+        return field;
+    }
+
+    /**
+     * @return Layer count per column of the field (0 = no layer)
+     */
+    public int[] getLayerValues() {
+        return layerValues;
+    }
+
+    /**
+     * @return Target chunks whose columns may hold layers
+     */
+    public List<ChunkPos> getChunks() {
+        return chunks;
+    }
+}
@@ -0,0 +1,93 @@
+package io.arona74.crlayers;
+
+/**
+ * Immutable copy of the LayerConfig values a layer calculation reads
+ * LayerConfig is changed on the server thread by /layerConfig, so calculations on worker threads
+ * never read it directly: the settings are copied once on the server thread when a run starts,
+ * and the whole run uses that copy.
+ */
+public class LayerSettings {
+    private final LayerConfig.GenerationMode mode;
+    private final int maxLayerDistance;
+    private final int edgeHeightThreshold;
+    private final int smoothingCycles;
+    private final LayerConfig.RoundingMode roundingMode;
+    private final LayerConfig.SmoothingPriority smoothingPriority;
+    private final boolean parallelLevels;
+
+    public LayerSettings(LayerConfig.GenerationMode mode,
+                         int maxLayerDistance,
+                         int edgeHeightThreshold,
+                         int smoothingCycles,
+                         LayerConfig.RoundingMode roundingMode,
+                         LayerConfig.SmoothingPriority smoothingPriority,
+                         boolean parallelLevels) {
+        this.mode = mode;
+        this.maxLayerDistance = maxLayerDistance;
+        this.edgeHeightThreshold = edgeHeightThreshold;
+        this.smoothingCycles = smoothingCycles;
+        this.roundingMode = roundingMode;
+        this.smoothingPriority = smoothingPriority;
+        this.parallelLevels = parallelLevels;
+    }
+
+    /**
+     * Copy the current configuration; must be called on the server thread
+     */
+    public static LayerSettings current() {
+        return new LayerSettings(
+            LayerConfig.MODE,
+            LayerConfig.MAX_LAYER_DISTANCE,
+            LayerConfig.EDGE_HEIGHT_THRESHOLD,
+            LayerConfig.SMOOTHING_CYCLES,
+            LayerConfig.SMOOTHING_ROUNDING_MODE,
+            LayerConfig.SMOOTHING_PRIORITY,
+            LayerConfig.PARALLEL_LEVELS);
+    }
+
+    /**
+     * @return Spreading distance of the mode: 2x MAX_LAYER_DISTANCE for EXTENDED, 3x for EXTREME
+     */
+    public int getEffectiveMaxDistance() {
+        if (mode == LayerConfig.GenerationMode.EXTENDED) {
+            return maxLayerDistance * 2;
+        } else if (mode == LayerConfig.GenerationMode.EXTREME) {
+            return maxLayerDistance * 3;
+        }
+        return maxLayerDistance;
+    }
+
+    public LayerConfig.GenerationMode getMode() {
+        return mode;
+    }
+
+    public int getMaxLayerDistance() {
+        return maxLayerDistance;
+    }
+
+    public int getEdgeHeightThreshold() {
+        return edgeHeightThreshold;
+    }
+
+    public int getSmoothingCycles() {
+        return smoothingCycles;
+    }
+
+    public LayerConfig.RoundingMode getRoundingMode() {
+        return roundingMode;
+    }
+
+    public LayerConfig.SmoothingPriority getSmoothingPriority() {
+        return smoothingPriority;
+    }
+
+    public boolean isParallelLevels() {
+        return parallelLevels;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Mode: %s, Max Distance: %d, Edge threshold: %d, Smoothing: %d cycles (%s, %s)",
+            mode, maxLayerDistance, edgeHeightThreshold, smoothingCycles, roundingMode, smoothingPriority);
+    }
+}
@@ -0,0 +1,157 @@
+package io.arona74.crlayers;
+
+/**
+ * Worklist-driven smoothing of the layer values of one plateau work unit
+ * A cell's smoothed value depends only on itself and its 4 cardinal neighbors, so after
+ * the first cycle only cells next to a change are re-evaluated, and smoothing stops as soon
+ * as a cycle changes nothing. Results are identical to running every cycle over every L cell.
+ * The first cycle covers whole row runs and goes through the row stencil of Stencils.
+ * Buffers are sized to the field once and reused for every unit and cycle.
+ */
+public class LayerSmoother {
+    private final Stencils stencils;
+    private final LayerSettings settings;
+    private final int[] heights;
+    private final int[] classes;       // Stencils.E_BLOCK / L_BLOCK bits per column
+    private final int sizeX;
+    private final int size;
+
+    private int[] worklist;            // Cells to evaluate this cycle
+    private int[] nextWorklist;        // Cells to evaluate next cycle
+    private final int[] changedColumns; // Cells whose value changed this cycle
+    private final int[] changedValues;  // Their new values, applied after the cycle
+    private final int[] queuedStamp;    // Stamp of the cycle a cell was last queued for
+    private final int[] runValues;      // Smoothed values of one row run
+    private int stamp;
+
+    // Levels of the unit being smoothed
+    private int currentY;
+    private int aboveY;
+
+    /**
+     * @param classes E_BLOCK / L_BLOCK bits of every column, shared by all smoothers
+     * @param settings Settings of the run (smoothing cycles, rounding and priority)
+     */
+    public LayerSmoother(HeightField field, int[] classes, LayerSettings settings) {
+        this.stencils = Stencils.get();
+        this.settings = settings;
+        this.heights = field.getHeights();
+        this.classes = classes;
+        this.sizeX = field.getSizeX();
+        this.size = field.size();
+        this.worklist = new int[size];
+        this.nextWorklist = new int[size];
+        this.changedColumns = new int[size];
+        this.changedValues = new int[size];
+        this.queuedStamp = new int[size];
+        this.runValues = new int[sizeX];
+    }
+
+    /**
+     * Run up to the configured number of smoothing cycles on a set of L blocks of one level
+     * H blocks are the E blocks at aboveY, E and L blocks of the level are those at currentY
+     * @param cells L blocks to smooth (whole plateaus), ascending
+     * @return Number of cycles that changed at least one value
+     */
+    public int smooth(int[] cells,
+                      int start,
+                      int end,
+                      int currentY,
+                      int aboveY,
+                      int[] layerValues) {
+        this.currentY = currentY;
+        this.aboveY = aboveY;
+
+        int cyclesUsed = 0;
+        int worklistSize = 0;
+        for (int cycle = 0; cycle < settings.getSmoothingCycles(); cycle++) {
+            // Evaluate against the values of the previous cycle
+            int changedCount = cycle == 0
+                ? evaluateRuns(cells, start, end, layerValues)
+                : evaluateWorklist(worklistSize, layerValues);
+
+            if (changedCount == 0) break;
+            cyclesUsed++;
+
+            // Apply changes, then queue each changed cell and its L neighbors once
+            stamp++;
+            int nextSize = 0;
+            for (int k = 0; k < changedCount; k++) {
+                layerValues[changedColumns[k]] = changedValues[k];
+            }
+            for (int k = 0; k < changedCount; k++) {
+                int index = changedColumns[k];
+                int dx = index % sizeX;
+                nextSize = enqueue(index, nextSize);
+                if (dx + 1 < sizeX) nextSize = enqueue(index + 1, nextSize);
+                if (dx > 0) nextSize = enqueue(index - 1, nextSize);
+                if (index + sizeX < size) nextSize = enqueue(index + sizeX, nextSize);
+                if (index - sizeX >= 0) nextSize = enqueue(index - sizeX, nextSize);
+            }
+
+            int[] swap = worklist;
+            worklist = nextWorklist;
+            nextWorklist = swap;
+            worklistSize = nextSize;
+        }
+
+        return cyclesUsed;
+    }
+
+    /**
+     * First cycle: every cell, as runs of consecutive cells within a row
+     * @return Number of changed cells
+     */
+    private int evaluateRuns(int[] cells, int start, int end, int[] layerValues) {
+        int changedCount = 0;
+        for (int k = start; k < end; ) {
+            int first = cells[k];
+            int length = 1;
+            while (k + length < end && cells[k + length] == first + length && (first + length) % sizeX != 0) {
+                length++;
+            }
+
+            stencils.smoothRun(heights, classes, layerValues, sizeX, first, length, currentY, aboveY, settings, runValues);
+            for (int i = 0; i < length; i++) {
+                if (runValues[i] != layerValues[first + i]) {
+                    changedColumns[changedCount] = first + i;
+                    changedValues[changedCount] = runValues[i];
+                    changedCount++;
+                }
+            }
+
+            k += length;
+        }
+        return changedCount;
+    }
+
+    /**
+     * Later cycles: only the cells queued by the previous cycle
+     * @return Number of changed cells
+     */
+    private int evaluateWorklist(int worklistSize, int[] layerValues) {
+        int changedCount = 0;
+        for (int k = 0; k < worklistSize; k++) {
+            int index = worklist[k];
+            int value = Stencils.smoothedValue(heights, classes, layerValues, sizeX, index, currentY, aboveY, settings);
+            if (value != layerValues[index]) {
+                changedColumns[changedCount] = index;
+                changedValues[changedCount] = value;
+                changedCount++;
+            }
+        }
+        return changedCount;
+    }
+
+    private int enqueue(int index, int nextSize) {
+        if (queuedStamp[index] != stamp && isL(index)) {
+            queuedStamp[index] = stamp;
+            nextWorklist[nextSize++] = index;
+        }
+        return nextSize;
+    }
+
+    private boolean isL(int index) {
+        return (classes[index] & Stencils.L_BLOCK) != 0 && heights[index] == currentY;
+    }
+}
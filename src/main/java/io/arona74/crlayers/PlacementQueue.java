@@ -0,0 +1,177 @@
+package io.arona74.crlayers;
+
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.server.MinecraftServer;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Block placement spread over server ticks under a millisecond budget
+ * Tasks are drained in order at the end of every tick. The budget adapts to the server's
+ * average tick time (MSPT): it is halved when MSPT nears the 50 ms of a tick and grows slowly
+ * while MSPT is low. When no player is online MSPT is not followed: it would mostly measure the
+ * queue itself, so the budget goes straight up to a fixed idle budget that stays below HIGH_MSPT.
+ * All methods must be called on the server thread.
+ */
+public class PlacementQueue {
+    private static final PlacementQueue INSTANCE = new PlacementQueue();
+
+    private static final double MIN_BUDGET_MS = 1.0;
+    private static final double START_BUDGET_MS = 5.0;
+    private static final double MAX_BUDGET_MS = 25.0;       // With players online
+    private static final double IDLE_BUDGET_MS = 35.0;      // Without players online, below HIGH_MSPT
+    private static final double HIGH_MSPT = 40.0;           // Shrink the budget above this
+    private static final double LOW_MSPT = 25.0;            // Grow the budget below this
+    private static final int STEPS_PER_CLOCK_CHECK = 16;
+
+    /**
+     * Placement work split into small steps (about one column each)
+     */
+    public interface Task {
+        /**
+         * Run the next step
+         * @return false once the task has nothing left to do
+         */
+        boolean step();
+
+        /**
+         * Called once after the last step, or after a step failed so the task can save what it did
+         * @return Result of the task (e.g. blocks placed)
+         */
+        int finish();
+    }
+
+    private static class Entry {
+        final Task task;
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+
+        Entry(Task task) {
+            this.task = task;
+        }
+    }
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private double budgetMs = START_BUDGET_MS;
+
+    public static PlacementQueue get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Drain the queue every tick, and finish remaining tasks when the server stops
+     */
+    public static void register() {
+        ServerTickEvents.END_SERVER_TICK.register(INSTANCE::tick);
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> INSTANCE.flush());
+    }
+
+    /**
+     * Queue a task behind the current ones
+     * @return Result of the task, completed on the server thread
+     */
+    public CompletableFuture<Integer> submit(Task task) {
+        Entry entry = new Entry(task);
+        entries.add(entry);
+        return entry.future;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public double getBudgetMs() {
+        return budgetMs;
+    }
+
+    private void tick(MinecraftServer server) {
+        if (entries.isEmpty()) return;
+
+        adaptBudget(server.getTickTime(), server.getCurrentPlayerCount());
+        long deadline = System.nanoTime() + (long) (budgetMs * 1_000_000L);
+
+        int steps = 0;
+        while (!entries.isEmpty()) {
+            Entry entry = entries.peek();
+            boolean more;
+            try {
+                more = entry.task.step();
+            } catch (RuntimeException e) {
+                entries.poll();
+                fail(entry, e);
+                continue;
+            }
+
+            if (!more) {
+                entries.poll();
+                complete(entry);
+            }
+
+            if (++steps % STEPS_PER_CLOCK_CHECK == 0 && System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * AIMD on the average tick time: back off hard near a full tick, probe upwards slowly
+     * Without players the budget does not follow MSPT, which includes the queue's own time
+     * and would halve the idle budget every time it is reached
+     */
+    private void adaptBudget(double averageMspt, int playerCount) {
+        if (playerCount == 0) {
+            budgetMs = Math.min(IDLE_BUDGET_MS, budgetMs * 2);
+        } else if (averageMspt >= HIGH_MSPT) {
+            budgetMs = Math.max(MIN_BUDGET_MS, budgetMs / 2);
+        } else if (averageMspt < LOW_MSPT) {
+            budgetMs = Math.min(MAX_BUDGET_MS, budgetMs + 1);
+        }
+
+        // Players joined while running at the idle budget
+        if (playerCount > 0 && budgetMs > MAX_BUDGET_MS) {
+            budgetMs = MAX_BUDGET_MS;
+        }
+    }
+
+    /**
+     * Finish every queued task without a budget
+     */
+    private void flush() {
+        if (entries.isEmpty()) return;
+
+        CRLayers.LOGGER.info("Finishing {} queued placement tasks before shutdown", entries.size());
+        while (!entries.isEmpty()) {
+            Entry entry = entries.poll();
+            try {
+                while (entry.task.step()) {
+                    // Keep stepping
+                }
+            } catch (RuntimeException e) {
+                fail(entry, e);
+                continue;
+            }
+            complete(entry);
+        }
+    }
+
+    /**
+     * Finish a task whose step failed, then fail its result with the step's error
+     */
+    private void fail(Entry entry, RuntimeException error) {
+        try {
+            entry.task.finish();
+        } catch (RuntimeException e) {
+            error.addSuppressed(e);
+        }
+        entry.future.completeExceptionally(error);
+    }
+
+    private void complete(Entry entry) {
+        try {
+            entry.future.complete(entry.task.finish());
+        } catch (RuntimeException e) {
+            entry.future.completeExceptionally(e);
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package io.arona74.crlayers;
 
 import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
+import net.minecraft.block.enums.DoubleBlockHalf;
 import net.minecraft.registry.Registries;
+import net.minecraft.state.property.Properties;
 import net.minecraft.util.Identifier;
 
 import java.util.HashMap;
@@ -14,10 +17,14 @@ import java.util.Map;
 public class PlantMappingRegistry {
     private final Map<Block, String> vanillaToConquestPlant;
     private final Map<String, Block> conquestToVanillaPlant;
+    private final Map<Block, Replacement> replacements;     // Resolved conquest plant states per vanilla plant
+    private final Map<Block, Restoration> restorations;     // Vanilla plant states used when removing layers
     
     public PlantMappingRegistry() {
         this.vanillaToConquestPlant = new HashMap<>();
         this.conquestToVanillaPlant = new HashMap<>();
+        this.replacements = new HashMap<>();
+        this.restorations = new HashMap<>();
         registerDefaultMappings();
     }
     
@@ -54,6 +61,29 @@ public class PlantMappingRegistry {
     private void registerPlantMapping(Block vanillaPlant, String conquestPlantId) {
         vanillaToConquestPlant.put(vanillaPlant, conquestPlantId);
         conquestToVanillaPlant.put(conquestPlantId, vanillaPlant);
+        
+        // Precompile both directions so placement and restoration need no parsing
+        Block conquestPlant = getConquestPlant(vanillaPlant);
+        if (conquestPlant != null) {
+            replacements.put(vanillaPlant, new Replacement(conquestPlant));
+        }
+        restorations.put(vanillaPlant, new Restoration(vanillaPlant));
+    }
+    
+    /**
+     * Get the precompiled replacement for a vanilla plant
+     * @return Replacement plan, or null if no mapping or conquest plant not found
+     */
+    public Replacement getReplacement(Block vanillaPlant) {
+        return replacements.get(vanillaPlant);
+    }
+    
+    /**
+     * Get the precompiled restoration for a stored vanilla plant
+     * Plants without a mapping (e.g. stored under an older config) are compiled on first use
+     */
+    public Restoration getRestoration(Block vanillaPlant) {
+        return restorations.computeIfAbsent(vanillaPlant, Restoration::new);
     }
     
     /**
@@ -111,4 +141,115 @@ public class PlantMappingRegistry {
         String blockId = Registries.BLOCK.getId(block).toString();
         return conquestToVanillaPlant.containsKey(blockId);
     }
+    
+    /**
+     * Check if a block is a two block tall plant
+     */
+    static boolean isTallPlant(Block block) {
+        return block == Blocks.TALL_GRASS ||
+               block == Blocks.LARGE_FERN ||
+               block == Blocks.SUNFLOWER ||
+               block == Blocks.LILAC ||
+               block == Blocks.ROSE_BUSH ||
+               block == Blocks.PEONY ||
+               block.getDefaultState().contains(Properties.DOUBLE_BLOCK_HALF);
+    }
+    
+    private static BlockState withHalf(BlockState state, DoubleBlockHalf half) {
+        if (state.contains(Properties.DOUBLE_BLOCK_HALF)) {
+            state = state.with(Properties.DOUBLE_BLOCK_HALF, half);
+        }
+        return state;
+    }
+    
+    private static BlockState withLayers(BlockState state, int layers) {
+        if (state.contains(Properties.LAYERS)) {
+            state = state.with(Properties.LAYERS, layers);
+        }
+        return state;
+    }
+    
+    /**
+     * Conquest plant states placed on top of a layer, per layer count 1-8 (index = count - 1)
+     */
+    public static class Replacement {
+        private final boolean tall;
+        private final BlockState[] singleStates;   // Default state, for single block placement
+        private final BlockState[] lowerStates;    // Lower half, for tall placement
+        private final BlockState[] upperStates;    // Upper half, for tall placement
+        
+        private Replacement(Block conquestPlant) {
+            this.tall = isTallPlant(conquestPlant);
+            this.singleStates = new BlockState[BlockMappingRegistry.MAX_LAYERS];
+            this.lowerStates = new BlockState[BlockMappingRegistry.MAX_LAYERS];
+            this.upperStates = new BlockState[BlockMappingRegistry.MAX_LAYERS];
+            
+            BlockState defaultState = conquestPlant.getDefaultState();
+            for (int layers = 1; layers <= BlockMappingRegistry.MAX_LAYERS; layers++) {
+                singleStates[layers - 1] = withLayers(defaultState, layers);
+                lowerStates[layers - 1] = withLayers(withHalf(defaultState, DoubleBlockHalf.LOWER), layers);
+                upperStates[layers - 1] = withLayers(withHalf(defaultState, DoubleBlockHalf.UPPER), layers);
+            }
+        }
+        
+        /**
+         * @return true if the conquest plant is two blocks tall
+         */
+        public boolean isTall() {
+            return tall;
+        }
+        
+        public BlockState getSingleState(int layerCount) {
+            return singleStates[layerIndex(layerCount)];
+        }
+        
+        public BlockState getLowerState(int layerCount) {
+            return lowerStates[layerIndex(layerCount)];
+        }
+        
+        public BlockState getUpperState(int layerCount) {
+            return upperStates[layerIndex(layerCount)];
+        }
+        
+        private static int layerIndex(int layerCount) {
+            return Math.max(1, Math.min(layerCount, BlockMappingRegistry.MAX_LAYERS)) - 1;
+        }
+    }
+    
+    /**
+     * Vanilla plant states put back when a layer is removed
+     */
+    public static class Restoration {
+        private final boolean tall;
+        private final BlockState singleState;
+        private final BlockState lowerState;
+        private final BlockState upperState;
+        
+        private Restoration(Block vanillaPlant) {
+            BlockState defaultState = vanillaPlant.getDefaultState();
+            this.tall = isTallPlant(vanillaPlant);
+            this.singleState = defaultState;
+            this.lowerState = withHalf(defaultState, DoubleBlockHalf.LOWER);
+            this.upperState = withHalf(defaultState, DoubleBlockHalf.UPPER);
+        }
+        
+        /**
+         * @return true if the vanilla plant is two blocks tall
+         */
+        public boolean isTall() {
+            return tall;
+        }
+        
+        public BlockState getSingleState() {
+            return singleState;
+        }
+        
+        public BlockState getLowerState() {
+            return lowerState;
+        }
+        
+        public BlockState getUpperState() {
+            return upperState;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,213 @@
+package io.arona74.crlayers;
+
+import java.util.BitSet;
+
+/**
+ * L blocks of the generated Y levels, split into plateaus and grouped into work units
+ * A plateau is a 4-connected group of same-height L blocks. Spreading runs and smoothing
+ * neighbors never leave a plateau (H and E blocks are fixed), so each plateau is independent.
+ * Plateaus without any H block next to them never receive layers and are dropped; small
+ * plateaus of the same level are batched so each unit has at least minUnitCells cells.
+ */
+public class Plateaus {
+    private final int[] cells;      // L blocks grouped by unit, ascending index within a unit
+    private final int[] unitStart;  // Start offset of each unit in cells (unit count + 1 entries)
+    private final int[] unitLevel;  // Level (HeightLevels position) of each unit
+    private final int plateauCount;
+    private final int activePlateauCount;
+
+    private Plateaus(int[] cells, int[] unitStart, int[] unitLevel, int plateauCount, int activePlateauCount) {
+        this.cells = cells;
+        this.unitStart = unitStart;
+        this.unitLevel = unitLevel;
+        this.plateauCount = plateauCount;
+        this.activePlateauCount = activePlateauCount;
+    }
+
+    /**
+     * Label the L blocks of all generated levels (all but the highest and lowest)
+     * @param eColumns E blocks of all levels
+     * @param lColumns L blocks of all levels
+     */
+    public static Plateaus of(HeightField field, HeightLevels levels, BitSet eColumns, BitSet lColumns,
+                              int minUnitCells) {
+        int sizeX = field.getSizeX();
+        int size = field.size();
+        int levelCount = levels.getLevelCount();
+
+        // Union-find over L blocks; the root of a plateau is its lowest index
+        int[] parent = new int[size];
+        for (int level = 1; level < levelCount - 1; level++) {
+            for (int k = levels.getStart(level); k < levels.getEnd(level); k++) {
+                int index = levels.getColumn(k);
+                if (!lColumns.get(index)) continue;
+                parent[index] = index;
+
+                // Ascending order within a level, so west and north neighbors are already initialized
+                int height = field.getHeight(index);
+                if (index % sizeX > 0 && isL(field, lColumns, index - 1, height)) {
+                    union(parent, index, index - 1);
+                }
+                if (index >= sizeX && isL(field, lColumns, index - sizeX, height)) {
+                    union(parent, index, index - sizeX);
+                }
+            }
+        }
+
+        // A plateau is active if any of its blocks has an H block (E block of the level above) next to it
+        BitSet activeRoots = new BitSet(size);
+        int[] plateauSize = new int[size];
+        int plateauCount = 0;
+        for (int level = 1; level < levelCount - 1; level++) {
+            int aboveY = levels.getLevel(level - 1);
+            for (int k = levels.getStart(level); k < levels.getEnd(level); k++) {
+                int index = levels.getColumn(k);
+                if (!lColumns.get(index)) continue;
+
+                int root = find(parent, index);
+                if (plateauSize[root]++ == 0) plateauCount++;
+                if (!activeRoots.get(root) && hasHNeighbor(field, eColumns, index, aboveY)) {
+                    activeRoots.set(root);
+                }
+            }
+        }
+
+        // Assign active plateaus to units, level by level, in order of their root
+        int[] unitOfRoot = new int[size];
+        int[] unitSizes = new int[activeRoots.cardinality()];
+        int[] unitLevels = new int[unitSizes.length];
+        int unitCount = 0;
+        int activePlateauCount = 0;
+        int activeCells = 0;
+        for (int level = 1; level < levelCount - 1; level++) {
+            int open = -1;
+            for (int k = levels.getStart(level); k < levels.getEnd(level); k++) {
+                int index = levels.getColumn(k);
+                if (!lColumns.get(index) || parent[index] != index || !activeRoots.get(index)) continue;
+
+                if (open < 0) {
+                    open = unitCount++;
+                    unitLevels[open] = level;
+                }
+                unitOfRoot[index] = open;
+                unitSizes[open] += plateauSize[index];
+                activePlateauCount++;
+                activeCells += plateauSize[index];
+
+                // Close the unit once it is large enough
+                if (unitSizes[open] >= minUnitCells) {
+                    open = -1;
+                }
+            }
+        }
+
+        int[] unitStart = new int[unitCount + 1];
+        for (int unit = 0; unit < unitCount; unit++) {
+            unitStart[unit + 1] = unitStart[unit] + unitSizes[unit];
+        }
+
+        // Place cells into their units; buckets are ascending, so units stay ascending
+        int[] cells = new int[activeCells];
+        int[] fill = new int[unitCount];
+        System.arraycopy(unitStart, 0, fill, 0, unitCount);
+        for (int level = 1; level < levelCount - 1; level++) {
+            for (int k = levels.getStart(level); k < levels.getEnd(level); k++) {
+                int index = levels.getColumn(k);
+                if (!lColumns.get(index)) continue;
+
+                int root = find(parent, index);
+                if (!activeRoots.get(root)) continue;
+                cells[fill[unitOfRoot[root]]++] = index;
+            }
+        }
+
+        int[] unitLevel = new int[unitCount];
+        System.arraycopy(unitLevels, 0, unitLevel, 0, unitCount);
+        return new Plateaus(cells, unitStart, unitLevel, plateauCount, activePlateauCount);
+    }
+
+    private static boolean isL(HeightField field, BitSet lColumns, int index, int height) {
+        return lColumns.get(index) && field.getHeight(index) == height;
+    }
+
+    private static boolean hasHNeighbor(HeightField field, BitSet eColumns, int index, int aboveY) {
+        int sizeX = field.getSizeX();
+        int dx = index % sizeX;
+        return (dx + 1 < sizeX && isH(field, eColumns, index + 1, aboveY)) ||
+               (dx > 0 && isH(field, eColumns, index - 1, aboveY)) ||
+               (index + sizeX < field.size() && isH(field, eColumns, index + sizeX, aboveY)) ||
+               (index >= sizeX && isH(field, eColumns, index - sizeX, aboveY));
+    }
+
+    private static boolean isH(HeightField field, BitSet eColumns, int index, int aboveY) {
+        return eColumns.get(index) && field.getHeight(index) == aboveY;
+    }
+
+    private static int find(int[] parent, int index) {
+        while (parent[index] != index) {
+            parent[index] = parent[parent[index]]; // Path halving
+            index = parent[index];
+        }
+        return index;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parent[rootA] = rootB;
+        }
+    }
+
+    /**
+     * @return Number of plateaus on the generated levels
+     */
+    public int getPlateauCount() {
+        return plateauCount;
+    }
+
+    /**
+     * @return Number of plateaus with at least one H block next to them
+     */
+    public int getActivePlateauCount() {
+        return activePlateauCount;
+    }
+
+    public int getUnitCount() {
+        return unitLevel.length;
+    }
+
+    /**
+     * @return Level (HeightLevels position) of all cells of a unit
+     */
+    public int getUnitLevel(int unit) {
+        return unitLevel[unit];
+    }
+
+    /**
+     * @return Offset of the first cell of a unit, for use with getCell
+     */
+    public int getStart(int unit) {
+        return unitStart[unit];
+    }
+
+    /**
+     * @return Offset one past the last cell of a unit, for use with getCell
+     */
+    public int getEnd(int unit) {
+        return unitStart[unit + 1];
+    }
+
+    public int getCell(int offset) {
+        return cells[offset];
+    }
+
+    /**
+     * @return Cells of all units (shared, do not modify)
+     */
+    public int[] getCells() {
+        return cells;
+    }
+}
@@ -0,0 +1,109 @@
+package io.arona74.crlayers;
+
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.WorldSavePath;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.dimension.DimensionType;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Which chunks of a dimension exist on disk, read from the region files' headers
+ * A region file (r.X.Z.mca) covers 32x32 chunks and starts with a 4 KiB table holding one
+ * location entry per chunk, zero for chunks that were never saved. Only the table is read.
+ * Saved chunks include partly generated ones, their status is only in the chunk data (see ChunkLoader).
+ * Not thread safe: an index filled on a worker thread is handed to the server thread through a future.
+ */
+public class RegionIndex {
+    public static final int REGION_CHUNKS = 32;
+    private static final Pattern REGION_FILE = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
+
+    private final Path regionDir;
+    private final Map<Long, BitSet> regions = new HashMap<>();   // Region key -> saved chunks (x + z * 32)
+
+    public RegionIndex(Path regionDir) {
+        this.regionDir = regionDir;
+    }
+
+    /**
+     * Index of the region files of a world's dimension
+     */
+    public static RegionIndex of(ServerWorld world) {
+        Path root = world.getServer().getSavePath(WorldSavePath.ROOT);
+        return new RegionIndex(DimensionType.getSaveDirectory(world.getRegistryKey(), root).resolve("region"));
+    }
+
+    /**
+     * @return Regions that have a file, as ChunkPos of region coordinates
+     */
+    public List<ChunkPos> listRegions() {
+        List<ChunkPos> found = new ArrayList<>();
+        if (!Files.isDirectory(regionDir)) return found;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(regionDir, "r.*.mca")) {
+            for (Path file : files) {
+                Matcher matcher = REGION_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    found.add(new ChunkPos(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+                }
+            }
+        } catch (IOException e) {
+            CRLayers.LOGGER.error("Failed to list region files in {}", regionDir, e);
+        }
+        return found;
+    }
+
+    /**
+     * Check if a chunk has been saved to its region file
+     */
+    public boolean exists(int chunkX, int chunkZ) {
+        int regionX = chunkX >> 5;
+        int regionZ = chunkZ >> 5;
+        BitSet saved = regions.computeIfAbsent(ChunkPos.toLong(regionX, regionZ), key -> readHeader(regionX, regionZ));
+        return saved.get((chunkX & 31) + (chunkZ & 31) * REGION_CHUNKS);
+    }
+
+    /**
+     * Read the headers of every region overlapping a chunk area, so exists never touches the disk there
+     */
+    public void readArea(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+        for (int regionZ = minChunkZ >> 5; regionZ <= maxChunkZ >> 5; regionZ++) {
+            for (int regionX = minChunkX >> 5; regionX <= maxChunkX >> 5; regionX++) {
+                int x = regionX;
+                int z = regionZ;
+                regions.computeIfAbsent(ChunkPos.toLong(x, z), key -> readHeader(x, z));
+            }
+        }
+    }
+
+    private BitSet readHeader(int regionX, int regionZ) {
+        BitSet saved = new BitSet(REGION_CHUNKS * REGION_CHUNKS);
+        Path file = regionDir.resolve("r." + regionX + "." + regionZ + ".mca");
+        if (!Files.exists(file)) return saved;
+
+        byte[] header = new byte[REGION_CHUNKS * REGION_CHUNKS * 4];
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream input = new DataInputStream(stream)) {
+            input.readFully(header);
+        } catch (IOException e) {
+            // Truncated or unreadable header (e.g. a region file being created): treat as empty
+            CRLayers.LOGGER.warn("Failed to read region header {}: {}", file, e.getMessage());
+            return saved;
+        }
+
+        ByteBuffer entries = ByteBuffer.wrap(header);
+        for (int entry = 0; entry < REGION_CHUNKS * REGION_CHUNKS; entry++) {
+            if (entries.getInt() != 0) saved.set(entry);
+        }
+        return saved;
+    }
+}
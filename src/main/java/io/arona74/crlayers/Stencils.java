@@ -0,0 +1,210 @@
+package io.arona74.crlayers;
+
+import java.util.Arrays;
+
+/**
+ * Neighborhood stencils of classification and smoothing, one row of cells at a time
+ * This class is the scalar implementation. When the JVM runs with
+ * --add-modules jdk.incubator.vector, VectorStencils replaces it with SIMD versions of the
+ * same row loops; both give identical results.
+ */
+public class Stencils {
+    public static final int E_BLOCK = 1;   // Column class bit: E block of its level
+    public static final int L_BLOCK = 2;   // Column class bit: L block of its level (within the edge band)
+
+    /**
+     * Neighbor bound of a missing neighbor (hole or outside the field)
+     */
+    public static final int MISSING = Integer.MAX_VALUE;
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final Stencils INSTANCE = load();
+
+    protected Stencils() {
+    }
+
+    /**
+     * @return Vectorized stencils if the Vector API module is available, scalar stencils otherwise
+     */
+    public static Stencils get() {
+        return INSTANCE;
+    }
+
+    private static Stencils load() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                // Loaded by name so the scalar path never links against the incubator module
+                Stencils stencils = (Stencils) Class.forName("io.arona74.crlayers.VectorStencils")
+                    .getDeclaredConstructor().newInstance();
+                CRLayers.LOGGER.info("Using {} stencils", stencils.getName());
+                return stencils;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                CRLayers.LOGGER.warn("Vector API unavailable, using scalar stencils", e);
+            }
+        }
+        return new Stencils();
+    }
+
+    public String getName() {
+        return "scalar";
+    }
+
+    // ==================== Classification ====================
+
+    /**
+     * Lowest and highest of the 8 neighbor heights of every column in a range of rows
+     * Missing neighbors count as MISSING, so a column has a missing neighbor iff its
+     * highest neighbor is MISSING, and its lowest present neighbor is its lowest neighbor.
+     * @param fromRow First row (Z offset) to compute
+     * @param toRow Row after the last one to compute
+     */
+    public void neighborBounds(HeightField field, int fromRow, int toRow, int[] neighborMin, int[] neighborMax) {
+        int sizeX = field.getSizeX();
+        int paddedX = sizeX + 2;
+
+        // One MISSING border around the field, so rows need no bounds checks
+        int[] padded = new int[paddedX * (toRow - fromRow + 2)];
+        Arrays.fill(padded, MISSING);
+        int[] heights = field.getHeights();
+        for (int z = Math.max(0, fromRow - 1); z < Math.min(field.getSizeZ(), toRow + 1); z++) {
+            int row = (z - fromRow + 1) * paddedX + 1;
+            for (int x = 0; x < sizeX; x++) {
+                int height = heights[z * sizeX + x];
+                padded[row + x] = height == HeightField.NO_SURFACE ? MISSING : height;
+            }
+        }
+
+        for (int z = fromRow; z < toRow; z++) {
+            neighborBoundsRow(padded, paddedX, (z - fromRow) * paddedX, z * sizeX, 0, sizeX, neighborMin, neighborMax);
+        }
+    }
+
+    /**
+     * @param above Padded offset of column -1 in the row above (the row below is two padded rows further)
+     * @param out Field index of column 0 of the row
+     */
+    protected void neighborBoundsRow(int[] padded, int paddedX, int above, int out, int fromX, int sizeX,
+                                     int[] neighborMin, int[] neighborMax) {
+        int middle = above + paddedX;
+        int below = middle + paddedX;
+        for (int x = fromX; x < sizeX; x++) {
+            int a = padded[above + x], b = padded[above + x + 1], c = padded[above + x + 2];
+            int d = padded[middle + x], e = padded[middle + x + 2];
+            int f = padded[below + x], g = padded[below + x + 1], h = padded[below + x + 2];
+
+            neighborMin[out + x] = Math.min(Math.min(Math.min(a, b), Math.min(c, d)),
+                                            Math.min(Math.min(e, f), Math.min(g, h)));
+            neighborMax[out + x] = Math.max(Math.max(Math.max(a, b), Math.max(c, d)),
+                                            Math.max(Math.max(e, f), Math.max(g, h)));
+        }
+    }
+
+    // ==================== Smoothing ====================
+
+    /**
+     * Smoothed values of a run of consecutive cells in one row
+     * @param out Receives the smoothed value of cell first + i at out[i]
+     */
+    public void smoothRun(int[] heights, int[] classes, int[] values, int sizeX,
+                          int first, int length, int currentY, int aboveY, LayerSettings settings, int[] out) {
+        for (int i = 0; i < length; i++) {
+            out[i] = smoothedValue(heights, classes, values, sizeX, first + i, currentY, aboveY, settings);
+        }
+    }
+
+    /**
+     * Smoothed value of a single L block
+     * Only smooths L blocks that have at least two cardinal neighbors that are H, E, or have a layer value.
+     * Smoothing calculation and max neighbor comparison consider only cardinal neighbors.
+     * @return New value, or the existing value if smoothing does not apply
+     */
+    public static int smoothedValue(int[] heights, int[] classes, int[] values, int sizeX,
+                                    int lIndex, int currentY, int aboveY, LayerSettings settings) {
+        int size = heights.length;
+        int dx = lIndex % sizeX;
+
+        // Get existing value (from spreading phase), 0 if none
+        int existingValue = values[lIndex];
+
+        int sum = 0;
+        int count = 0;
+        int maxCardinalNeighborValue = 0;
+        boolean hasEBlockNeighbor = false;
+
+        // Only consider the 4 cardinal neighbors (East, West, South, North)
+        for (int direction = 0; direction < 4; direction++) {
+            int neighbor;
+            if (direction == 0) {
+                neighbor = dx + 1 < sizeX ? lIndex + 1 : -1;
+            } else if (direction == 1) {
+                neighbor = dx > 0 ? lIndex - 1 : -1;
+            } else if (direction == 2) {
+                neighbor = lIndex + sizeX < size ? lIndex + sizeX : -1;
+            } else {
+                neighbor = lIndex - sizeX;
+            }
+            if (neighbor < 0) continue;
+
+            int neighborClass = classes[neighbor];
+            int neighborHeight = heights[neighbor];
+            if ((neighborClass & E_BLOCK) != 0) {
+                if (neighborHeight == aboveY) {
+                    // H block
+                    sum += 8;
+                    count++;
+                    maxCardinalNeighborValue = 8;
+                } else if (neighborHeight == currentY) {
+                    // E block
+                    count++;
+                    hasEBlockNeighbor = true;
+                }
+            } else if ((neighborClass & L_BLOCK) != 0 && neighborHeight == currentY && values[neighbor] > 0) {
+                // Only L blocks of this level carry layer values
+                int neighborValue = values[neighbor];
+                sum += neighborValue;
+                count++;
+                maxCardinalNeighborValue = Math.max(maxCardinalNeighborValue, neighborValue);
+            }
+        }
+
+        // Require at least two valid cardinal neighbors
+        if (count < 2) return existingValue;
+
+        // Only smooth if max cardinal neighbor value is at least 2
+        if (maxCardinalNeighborValue < 2) return existingValue;
+
+        // Integer forms of ceil / round (half up) / floor of sum / count
+        int value;
+
+        if (settings.getRoundingMode() == LayerConfig.RoundingMode.UP) {
+            value = (sum + count - 1) / count;
+        } else if (settings.getRoundingMode() == LayerConfig.RoundingMode.NEAREST) {
+            value = (2 * sum + count) / (2 * count);
+        } else { // DOWN
+            value = sum / count;
+        }
+
+        // Clamp to valid range 1-7
+        value = Math.max(1, Math.min(7, value));
+
+        // Ensure smoothed value is strictly less than max cardinal neighbor
+        if (value >= maxCardinalNeighborValue) {
+            value = maxCardinalNeighborValue - 1;
+            if (value < 1) value = 1; // safety clamp
+        }
+
+        // Apply smoothing based on priority mode
+        if (settings.getSmoothingPriority() == LayerConfig.SmoothingPriority.UP) {
+            // UP: Only apply smoothing if it INCREASES the value (preserves extended gradients)
+            return value > existingValue ? value : existingValue;
+        }
+
+        // DOWN: Hybrid approach
+        if (hasEBlockNeighbor) {
+            // Near edges: Traditional smoothing (always apply)
+            return value;
+        }
+        // Away from edges: Preserve gradients (only apply if higher, like UP mode)
+        return value > existingValue ? value : existingValue;
+    }
+}
@@ -0,0 +1,108 @@
+package io.arona74.crlayers;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.PalettedContainer;
+
+/**
+ * Finds the terrain surface of a column directly from the chunk's sections
+ * Starts at the chunk's WORLD_SURFACE heightmap and walks down, but skips whole sections
+ * whose palette holds no terrain candidate (air, leaves, plants...) and classifies
+ * block states with the precomputed BlockStateFlags table.
+ * Reads a WorldSnapshot, so it runs on any thread when given copied chunks.
+ */
+public class SurfaceFinder {
+    private static final byte SECTION_UNKNOWN = 0;
+    private static final byte SECTION_SKIP = 1;      // Empty or no terrain candidate in palette
+    private static final byte SECTION_SEARCH = 2;    // Palette has at least one terrain candidate
+
+    private final WorldSnapshot snapshot;
+    private final int bottomY;
+    private final BlockStateFlags blockFlags;
+
+    // Sections of the chunk currently being scanned
+    private ChunkSnapshot chunk;
+    private int chunkX;
+    private int chunkZ;
+    private byte[] sectionStates;
+
+    public SurfaceFinder(WorldSnapshot snapshot, BlockStateFlags blockFlags) {
+        this.snapshot = snapshot;
+        this.blockFlags = blockFlags;
+        this.bottomY = snapshot.getBottomY();
+    }
+
+    /**
+     * Find the surface block of a column
+     * @param pos Column position; moved to the surface block if one is found
+     * @return Surface block state, or null if the column has no surface (or its chunk is not in the snapshot)
+     */
+    public BlockState findSurface(BlockPos.Mutable pos) {
+        int x = pos.getX();
+        int z = pos.getZ();
+        if (!selectChunk(x >> 4, z >> 4)) {
+            return null;
+        }
+
+        // Start from world surface heightmap (same value as World.getTopY)
+        int y = chunk.getTopY(x, z) + 1;
+        int sectionCount = chunk.getSectionCount();
+
+        // Walk down to find actual solid terrain (skip air, plants, leaves)
+        while (y > bottomY) {
+            int sectionIndex = (y - bottomY) >> 4;
+
+            if (sectionIndex >= sectionCount || !sectionHasCandidate(sectionIndex)) {
+                // Nothing in this section can be terrain, continue below it
+                y = Math.min(y, bottomY + (sectionIndex << 4)) - 1;
+                continue;
+            }
+
+            BlockState state = chunk.getSection(sectionIndex).get(x & 15, y & 15, z & 15);
+            if (isTerrainCandidate(state)) {
+                // Found solid surface block
+                pos.setY(y);
+                return state;
+            }
+            y--;
+        }
+
+        return null;
+    }
+
+    /**
+     * Check if a block state stops the downward walk, i.e. is solid terrain
+     * Air, leaves, mushroom blocks, plants and non-full blocks are walked through
+     */
+    public boolean isTerrainCandidate(BlockState state) {
+        return blockFlags.isSurface(state);
+    }
+
+    private boolean selectChunk(int x, int z) {
+        if (chunk != null && chunkX == x && chunkZ == z) {
+            return true;
+        }
+        chunk = snapshot.getChunk(x, z);
+        if (chunk == null) {
+            return false;
+        }
+        chunkX = x;
+        chunkZ = z;
+        sectionStates = new byte[chunk.getSectionCount()];
+        return true;
+    }
+
+    /**
+     * Check once per section whether its palette contains any terrain candidate
+     */
+    private boolean sectionHasCandidate(int sectionIndex) {
+        byte state = sectionStates[sectionIndex];
+        if (state == SECTION_UNKNOWN) {
+            PalettedContainer<BlockState> section = chunk.getSection(sectionIndex);
+            boolean hasCandidate = section != null && section.hasAny(this::isTerrainCandidate);
+            state = hasCandidate ? SECTION_SEARCH : SECTION_SKIP;
+            sectionStates[sectionIndex] = state;
+        }
+        return state == SECTION_SEARCH;
+    }
+}
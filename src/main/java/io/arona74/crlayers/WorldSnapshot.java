@@ -0,0 +1,179 @@
+package io.arona74.crlayers;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.*;
+
+/**
+ * Block access for surface scanning, either copied chunk snapshots or the live world
+ * Copies are taken on the server thread and can then be scanned on any thread. Each chunk is
+ * copied from its top block down to the first section made only of surface blocks, where every
+ * column's surface search must have ended. Water checks read neighbor columns at the surface of
+ * the column next to them, so a chunk also reaches down as far as its cardinal neighbors do, and
+ * loaded chunks bordering the area are copied (but not scanned) for the same reads.
+ */
+public class WorldSnapshot {
+    private static final BlockState AIR = Blocks.AIR.getDefaultState();
+    private static final int[][] CARDINAL_OFFSETS = { { 0, -1 }, { 0, 1 }, { 1, 0 }, { -1, 0 } };
+
+    private final World world;                      // Live view when not null
+    private final int bottomY;
+    private final List<ChunkPos> chunks;            // Chunks to scan
+    private final Map<Long, ChunkSnapshot> snapshots;
+
+    private WorldSnapshot(World world, int bottomY, List<ChunkPos> chunks, Map<Long, ChunkSnapshot> snapshots) {
+        this.world = world;
+        this.bottomY = bottomY;
+        this.chunks = chunks;
+        this.snapshots = snapshots;
+    }
+
+    /**
+     * View the live world, for use on the server thread only
+     */
+    public static WorldSnapshot live(World world) {
+        return new WorldSnapshot(world, world.getBottomY(), Collections.emptyList(), Collections.emptyMap());
+    }
+
+    /**
+     * Copy loaded chunks on the server thread
+     * @param chunks Loaded chunks to scan
+     */
+    public static WorldSnapshot copy(World world, Collection<ChunkPos> chunks, BlockStateFlags blockFlags) {
+        int bottomY = world.getBottomY();
+
+        // Lowest section each scanned chunk's surface search can reach
+        Map<Long, Integer> solidSections = new HashMap<>();
+        Map<Long, WorldChunk> worldChunks = new HashMap<>();
+        for (ChunkPos chunkPos : chunks) {
+            WorldChunk chunk = world.getChunk(chunkPos.x, chunkPos.z);
+            worldChunks.put(chunkPos.toLong(), chunk);
+            solidSections.put(chunkPos.toLong(), findSolidSection(chunk, bottomY, blockFlags));
+        }
+
+        // Loaded chunks bordering the area, only read by water checks
+        Set<Long> halo = new HashSet<>();
+        for (ChunkPos chunkPos : chunks) {
+            for (int[] offset : CARDINAL_OFFSETS) {
+                int x = chunkPos.x + offset[0];
+                int z = chunkPos.z + offset[1];
+                long key = ChunkPos.toLong(x, z);
+                if (!worldChunks.containsKey(key) && !halo.contains(key) && world.isChunkLoaded(x, z)) {
+                    halo.add(key);
+                }
+            }
+        }
+
+        Map<Long, ChunkSnapshot> snapshots = new HashMap<>();
+        int mappableChunks = 0;
+        int fluidChunks = 0;
+        int copiedSections = 0;
+        for (ChunkPos chunkPos : chunks) {
+            WorldChunk chunk = worldChunks.get(chunkPos.toLong());
+            ChunkSummary summary = ChunkSummary.of(chunk, bottomY, blockFlags);
+            if (summary.hasMappable()) mappableChunks++;
+            if (summary.hasFluids()) fluidChunks++;
+
+            int lowestSection = lowestNeighborSection(solidSections, chunkPos.x, chunkPos.z,
+                solidSections.get(chunkPos.toLong()));
+            ChunkSnapshot snapshot = ChunkSnapshot.copy(chunk, bottomY, lowestSection, summary);
+            snapshots.put(chunkPos.toLong(), snapshot);
+            copiedSections += countSections(snapshot);
+        }
+        for (long key : halo) {
+            int x = ChunkPos.getPackedX(key);
+            int z = ChunkPos.getPackedZ(key);
+            WorldChunk chunk = world.getChunk(x, z);
+            int lowestSection = lowestNeighborSection(solidSections, x, z, Integer.MAX_VALUE);
+            ChunkSnapshot snapshot = ChunkSnapshot.copy(chunk, bottomY, lowestSection,
+                ChunkSummary.of(chunk, bottomY, blockFlags));
+            snapshots.put(key, snapshot);
+            copiedSections += countSections(snapshot);
+        }
+
+        CRLayers.LOGGER.info("Snapshot of {} chunks (+{} bordering): {} sections copied, {} with mappable blocks, {} with fluids",
+            chunks.size(), halo.size(), copiedSections, mappableChunks, fluidChunks);
+        return new WorldSnapshot(null, bottomY, new ArrayList<>(chunks), snapshots);
+    }
+
+    /**
+     * Highest section made only of surface blocks, below which no surface search continues
+     * @return Section index, or 0 if there is none
+     */
+    private static int findSolidSection(WorldChunk chunk, int bottomY, BlockStateFlags blockFlags) {
+        int maxTopY = Integer.MIN_VALUE;
+        for (int y : ChunkSnapshot.sampleTopY(chunk)) maxTopY = Math.max(maxTopY, y);
+
+        ChunkSection[] sections = chunk.getSectionArray();
+        for (int sectionIndex = Math.min(sections.length - 1, (maxTopY - bottomY) >> 4); sectionIndex > 0; sectionIndex--) {
+            ChunkSection section = sections[sectionIndex];
+            if (!section.isEmpty() && !section.getBlockStateContainer().hasAny(state -> !blockFlags.isSurface(state))) {
+                return sectionIndex;
+            }
+        }
+        return 0;
+    }
+
+    private static int lowestNeighborSection(Map<Long, Integer> solidSections, int x, int z, int own) {
+        int lowest = own;
+        for (int[] offset : CARDINAL_OFFSETS) {
+            Integer neighbor = solidSections.get(ChunkPos.toLong(x + offset[0], z + offset[1]));
+            if (neighbor != null) lowest = Math.min(lowest, neighbor);
+        }
+        return lowest == Integer.MAX_VALUE ? 0 : lowest;
+    }
+
+    private static int countSections(ChunkSnapshot snapshot) {
+        int count = 0;
+        for (int sectionIndex = 0; sectionIndex < snapshot.getSectionCount(); sectionIndex++) {
+            if (snapshot.getSection(sectionIndex) != null) count++;
+        }
+        return count;
+    }
+
+    public int getBottomY() {
+        return bottomY;
+    }
+
+    /**
+     * @return Chunks to scan (empty for live views)
+     */
+    public List<ChunkPos> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @return Snapshot of a chunk, or null if it was not copied
+     */
+    public ChunkSnapshot getChunk(int chunkX, int chunkZ) {
+        if (world != null) {
+            return ChunkSnapshot.live(world.getChunk(chunkX, chunkZ), bottomY);
+        }
+        return snapshots.get(ChunkPos.toLong(chunkX, chunkZ));
+    }
+
+    /**
+     * @return Summary of a copied chunk, or null if unknown (not copied, or a live view)
+     */
+    public ChunkSummary getSummary(int chunkX, int chunkZ) {
+        ChunkSnapshot snapshot = snapshots.get(ChunkPos.toLong(chunkX, chunkZ));
+        return snapshot == null ? null : snapshot.getSummary();
+    }
+
+    /**
+     * @return Block state, air for chunks that were not copied
+     */
+    public BlockState getBlockState(BlockPos.Mutable pos) {
+        if (world != null) {
+            return world.getBlockState(pos);
+        }
+        ChunkSnapshot snapshot = snapshots.get(ChunkPos.toLong(pos.getX() >> 4, pos.getZ() >> 4));
+        return snapshot == null ? AIR : snapshot.getBlockState(pos.getX(), pos.getY(), pos.getZ());
+    }
+}
@@ -0,0 +1,145 @@
+package io.arona74.crlayers;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Stencils on the JDK Vector API, processing as many columns of a row per step as the CPU has int lanes
+ * Only loaded by Stencils.get() when jdk.incubator.vector is in the boot layer. Columns on the
+ * border of the field and the tail of each row fall back to the scalar code.
+ */
+public class VectorStencils extends Stencils {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public String getName() {
+        return "vector (" + SPECIES.length() + " lanes)";
+    }
+
+    // ==================== Classification ====================
+
+    @Override
+    protected void neighborBoundsRow(int[] padded, int paddedX, int above, int out, int fromX, int sizeX,
+                                     int[] neighborMin, int[] neighborMax) {
+        int middle = above + paddedX;
+        int below = middle + paddedX;
+        int x = fromX;
+
+        for (int bound = SPECIES.loopBound(sizeX - fromX) + fromX; x < bound; x += SPECIES.length()) {
+            IntVector a = IntVector.fromArray(SPECIES, padded, above + x);
+            IntVector b = IntVector.fromArray(SPECIES, padded, above + x + 1);
+            IntVector c = IntVector.fromArray(SPECIES, padded, above + x + 2);
+            IntVector d = IntVector.fromArray(SPECIES, padded, middle + x);
+            IntVector e = IntVector.fromArray(SPECIES, padded, middle + x + 2);
+            IntVector f = IntVector.fromArray(SPECIES, padded, below + x);
+            IntVector g = IntVector.fromArray(SPECIES, padded, below + x + 1);
+            IntVector h = IntVector.fromArray(SPECIES, padded, below + x + 2);
+
+            a.min(b).min(c.min(d)).min(e.min(f).min(g.min(h))).intoArray(neighborMin, out + x);
+            a.max(b).max(c.max(d)).max(e.max(f).max(g.max(h))).intoArray(neighborMax, out + x);
+        }
+
+        super.neighborBoundsRow(padded, paddedX, above, out, x, sizeX, neighborMin, neighborMax);
+    }
+
+    // ==================== Smoothing ====================
+
+    @Override
+    public void smoothRun(int[] heights, int[] classes, int[] values, int sizeX,
+                          int first, int length, int currentY, int aboveY, LayerSettings settings, int[] out) {
+        int z = first / sizeX;
+        int rowCount = heights.length / sizeX;
+        if (z == 0 || z == rowCount - 1) {
+            // First and last rows miss a neighbor row
+            super.smoothRun(heights, classes, values, sizeX, first, length, currentY, aboveY, settings, out);
+            return;
+        }
+
+        // Lanes need all 4 neighbors inside the row, so the first and last columns stay scalar
+        int x = first % sizeX;
+        int from = Math.max(0, 1 - x);
+        int to = Math.min(length, sizeX - 1 - x);
+        if (from >= to) {
+            super.smoothRun(heights, classes, values, sizeX, first, length, currentY, aboveY, settings, out);
+            return;
+        }
+
+        for (int i = 0; i < from; i++) {
+            out[i] = smoothedValue(heights, classes, values, sizeX, first + i, currentY, aboveY, settings);
+        }
+
+        int i = from;
+        for (int bound = SPECIES.loopBound(to - from) + from; i < bound; i += SPECIES.length()) {
+            smoothLanes(heights, classes, values, sizeX, first + i, currentY, aboveY, settings, out, i);
+        }
+
+        for (; i < length; i++) {
+            out[i] = smoothedValue(heights, classes, values, sizeX, first + i, currentY, aboveY, settings);
+        }
+    }
+
+    /**
+     * Stencils.smoothedValue for SPECIES.length() consecutive cells
+     */
+    private void smoothLanes(int[] heights, int[] classes, int[] values, int sizeX,
+                             int index, int currentY, int aboveY, LayerSettings settings, int[] out, int offset) {
+        IntVector zero = IntVector.zero(SPECIES);
+        IntVector sum = zero;
+        IntVector count = zero;
+        IntVector maxNeighbor = zero;
+        VectorMask<Integer> hasEBlockNeighbor = SPECIES.maskAll(false);
+
+        // East, West, South, North
+        for (int direction = 0; direction < 4; direction++) {
+            int neighbor = index + (direction == 0 ? 1 : direction == 1 ? -1 : direction == 2 ? sizeX : -sizeX);
+            IntVector height = IntVector.fromArray(SPECIES, heights, neighbor);
+            IntVector neighborClass = IntVector.fromArray(SPECIES, classes, neighbor);
+            IntVector value = IntVector.fromArray(SPECIES, values, neighbor);
+
+            VectorMask<Integer> e = neighborClass.and(E_BLOCK).compare(VectorOperators.NE, 0);
+            VectorMask<Integer> atLevel = height.compare(VectorOperators.EQ, currentY);
+            VectorMask<Integer> isH = e.and(height.compare(VectorOperators.EQ, aboveY));
+            VectorMask<Integer> isE = e.and(atLevel);
+            VectorMask<Integer> isL = e.not()
+                .and(neighborClass.and(L_BLOCK).compare(VectorOperators.NE, 0))
+                .and(atLevel)
+                .and(value.compare(VectorOperators.GT, 0));
+
+            // H blocks count as 8, L blocks as their value, E blocks as 0
+            IntVector contribution = zero.blend(value, isL).blend(8, isH);
+            sum = sum.add(contribution);
+            count = count.add(1, isH.or(isE).or(isL));
+            maxNeighbor = maxNeighbor.max(contribution);
+            hasEBlockNeighbor = hasEBlockNeighbor.or(isE);
+        }
+
+        // Lanes with fewer than 2 neighbors are discarded below, keep their divisor valid
+        IntVector divisor = count.max(1);
+        IntVector smoothed;
+        if (settings.getRoundingMode() == LayerConfig.RoundingMode.UP) {
+            smoothed = sum.add(divisor).sub(1).div(divisor);
+        } else if (settings.getRoundingMode() == LayerConfig.RoundingMode.NEAREST) {
+            smoothed = sum.mul(2).add(divisor).div(divisor.mul(2));
+        } else { // DOWN
+            smoothed = sum.div(divisor);
+        }
+
+        // Clamp to 1-7, then strictly below the max cardinal neighbor (but at least 1)
+        smoothed = smoothed.max(1).min(7);
+        smoothed = smoothed.blend(maxNeighbor.sub(1).max(1), smoothed.compare(VectorOperators.GE, maxNeighbor));
+
+        // UP priority everywhere, DOWN priority away from E blocks: only ever raise values
+        IntVector existing = IntVector.fromArray(SPECIES, values, index);
+        VectorMask<Integer> onlyRaise = settings.getSmoothingPriority() == LayerConfig.SmoothingPriority.UP
+            ? SPECIES.maskAll(true)
+            : hasEBlockNeighbor.not();
+        smoothed = smoothed.blend(smoothed.max(existing), onlyRaise);
+
+        // Smoothing needs 2 neighbors and a max neighbor of at least 2
+        VectorMask<Integer> unchanged = count.compare(VectorOperators.LT, 2)
+            .or(maxNeighbor.compare(VectorOperators.LT, 2));
+        smoothed.blend(existing, unchanged).intoArray(out, offset);
+    }
+}